@@ -0,0 +1,103 @@
+package data.loader.sst.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cc.kave.commons.model.events.completionevents.Context;
+import cc.kave.commons.utils.io.ReadingArchive;
+import data.loader.sst.SSTPrintingContextExtended;
+import data.loader.sst.SSTPrintingVisitorExtended;
+import data.loader.sst.TypeHeaderCache;
+import data.loader.sst.TypeNameCache;
+
+/**
+ * Measures the printing cost of a fixed random sample of real SSTs, taken from a Kave context archive given with
+ * "-p archive=&lt;path to .zip&gt;". Run with the GC profiler ("-prof gc") to get the bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CorpusPrintingBenchmark {
+
+	@Param("")
+	public String archive;
+
+	@Param("256")
+	public int sampleSize;
+
+	private final List<Context> sample = new ArrayList<>();
+	private SSTPrintingVisitorExtended visitor;
+	private SSTPrintingContextExtended context;
+	private SSTPrintingVisitorExtended cachingVisitor;
+	private SSTPrintingContextExtended cachingContext;
+
+	@Setup
+	public void setUp() {
+		if (archive.isEmpty()) {
+			throw new IllegalArgumentException("set the context archive to sample with -p archive=<path>");
+		}
+		// reservoir sample with a fixed seed, so runs are comparable
+		Random random = new Random(42);
+		ReadingArchive contexts = new ReadingArchive(new File(archive));
+		try {
+			int seen = 0;
+			while (contexts.hasNext()) {
+				Context next = contexts.getNext(Context.class);
+				if (sample.size() < sampleSize) {
+					sample.add(next);
+				} else {
+					int slot = random.nextInt(seen + 1);
+					if (slot < sampleSize) {
+						sample.set(slot, next);
+					}
+				}
+				seen++;
+			}
+		} finally {
+			contexts.close();
+		}
+		visitor = new SSTPrintingVisitorExtended();
+		context = new SSTPrintingContextExtended();
+		// the caches of SSTCorpusConverter; they carry over between iterations like between the files of a run
+		cachingVisitor = new SSTPrintingVisitorExtended();
+		cachingVisitor.setTypeHeaderCache(new TypeHeaderCache());
+		cachingContext = new SSTPrintingContextExtended();
+		cachingContext.setTypeNameCache(new TypeNameCache());
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended printSample() {
+		for (Context c : sample) {
+			context.reset().setTypeShape(c.getTypeShape());
+			c.getSST().accept(visitor, context);
+		}
+		return context;
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended printSampleCached() {
+		for (Context c : sample) {
+			cachingContext.reset().setTypeShape(c.getTypeShape());
+			c.getSST().accept(cachingVisitor, cachingContext);
+		}
+		return cachingContext;
+	}
+}
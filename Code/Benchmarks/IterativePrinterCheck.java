@@ -0,0 +1,84 @@
+package data.loader.sst.benchmarks;
+
+import java.io.File;
+
+import cc.kave.commons.model.events.completionevents.Context;
+import cc.kave.commons.model.ssts.ISST;
+import cc.kave.commons.utils.io.ReadingArchive;
+import data.loader.sst.IterativeSSTPrintingVisitor;
+import data.loader.sst.SSTPrintingContextExtended;
+import data.loader.sst.SSTPrintingVisitorExtended;
+
+/**
+ * Checks that {@link IterativeSSTPrintingVisitor} prints exactly like the recursive visitor, independently of the
+ * benchmarks: on the synthetic SST of {@link SyntheticSSTs#nestedBlocks(int)} for every depth up to the given one, so
+ * that every kind of compound statement, lambda and loop header is checked at every nesting level and directly inside
+ * every other kind, and on every context of the given Kave context archives. Prints the first difference and exits
+ * with status 1 if the visitors disagree.
+ */
+public class IterativePrinterCheck {
+
+	private final SSTPrintingVisitorExtended _recursive = new SSTPrintingVisitorExtended();
+	private final SSTPrintingVisitorExtended _iterative = new IterativeSSTPrintingVisitor();
+	private final SSTPrintingContextExtended _expected = new SSTPrintingContextExtended();
+	private final SSTPrintingContextExtended _actual = new SSTPrintingContextExtended();
+	private int _checked;
+
+	public static void main(String[] args) {
+		if (args.length > 0 && !args[0].matches("\\d+")) {
+			System.err.println("usage: IterativePrinterCheck [max depth] [context archive...]");
+			System.exit(1);
+		}
+		int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		IterativePrinterCheck check = new IterativePrinterCheck();
+		for (int depth = 0; depth <= maxDepth; depth++) {
+			check.check(SyntheticSSTs.nestedBlocks(depth), null, "synthetic SST of depth " + depth);
+		}
+		for (int i = 1; i < args.length; i++) {
+			ReadingArchive contexts = new ReadingArchive(new File(args[i]));
+			try {
+				for (int n = 0; contexts.hasNext(); n++) {
+					Context context = contexts.getNext(Context.class);
+					check.check(context.getSST(), context, "context " + n + " of " + args[i]);
+				}
+			} finally {
+				contexts.close();
+			}
+		}
+		System.out.println(check._checked + " SSTs printed identically by both visitors");
+	}
+
+	private void check(ISST sst, Context context, String description) {
+		String expected = print(_recursive, _expected, sst, context);
+		String actual = print(_iterative, _actual, sst, context);
+		if (!expected.equals(actual)) {
+			int line = 1;
+			int i = 0;
+			while (i < Math.min(expected.length(), actual.length()) && expected.charAt(i) == actual.charAt(i)) {
+				if (expected.charAt(i++) == '\n') {
+					line++;
+				}
+			}
+			System.err.printf("visitors disagree on %s (%s) at line %d:%n  recursive: %s%n  iterative: %s%n",
+					description, sst.getEnclosingType(), line, line(expected, i), line(actual, i));
+			System.exit(1);
+		}
+		_checked++;
+	}
+
+	private static String print(SSTPrintingVisitorExtended visitor, SSTPrintingContextExtended printingContext,
+			ISST sst, Context context) {
+		printingContext.reset().setTypeShape(context != null ? context.getTypeShape() : null);
+		sst.accept(visitor, printingContext);
+		return printingContext.toString();
+	}
+
+	/**
+	 * Returns the line of the text that contains the given index.
+	 */
+	private static String line(String text, int index) {
+		int start = text.lastIndexOf('\n', index - 1) + 1;
+		int end = text.indexOf('\n', index);
+		return text.substring(start, end < 0 ? text.length() : end);
+	}
+}
@@ -0,0 +1,90 @@
+package data.models.ngram.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import data.models.ngram.NGramModel;
+
+/**
+ * Measures the training and top-k query cost of the n-gram model on a synthetic token stream with a Zipf-like
+ * vocabulary and repeated phrases. Both are reported per token or query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NGramModelBenchmark {
+
+	private static final int FILE_LENGTH = 4096;
+	private static final int QUERIES = 256;
+
+	@Param({ "10", "1000" })
+	public int k;
+
+	@Param("50000")
+	public int vocabularySize;
+
+	private int[] file;
+	private NGramModel trained;
+	private int[][] queries;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		file = tokens(random, FILE_LENGTH);
+		trained = new NGramModel();
+		for (int i = 0; i < 256; i++) {
+			trained.learn(tokens(random, FILE_LENGTH));
+		}
+		queries = new int[QUERIES][];
+		for (int i = 0; i < QUERIES; i++) {
+			queries[i] = tokens(random, 64);
+		}
+	}
+
+	private int[] tokens(Random random, int length) {
+		int[] tokens = new int[length];
+		for (int i = 0; i < length; i++) {
+			if (i > 0 && random.nextInt(4) > 0) {
+				// a deterministic successor, so that longer contexts recur
+				tokens[i] = (int) ((tokens[i - 1] * 31L + 7) % vocabularySize);
+			} else {
+				tokens[i] = (int) (vocabularySize * Math.pow(random.nextDouble(), 4));
+			}
+		}
+		return tokens;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FILE_LENGTH)
+	public NGramModel learn() {
+		NGramModel model = new NGramModel();
+		model.learn(file);
+		return model;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public int predict() {
+		int predicted = 0;
+		for (int[] query : queries) {
+			predicted += trained.predict(query, query.length, k).length;
+		}
+		return predicted;
+	}
+}
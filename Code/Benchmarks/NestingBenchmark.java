@@ -0,0 +1,150 @@
+package data.loader.sst.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cc.kave.commons.model.events.completionevents.Context;
+import cc.kave.commons.utils.io.ReadingArchive;
+import data.loader.sst.IterativeSSTPrintingVisitor;
+import data.loader.sst.SSTPrintingContextExtended;
+import data.loader.sst.SSTPrintingVisitorExtended;
+
+/**
+ * Compares the recursive printing visitor with {@link IterativeSSTPrintingVisitor} on deeply nested SSTs: the
+ * sampleSize most deeply nested SSTs of a Kave context archive given with "-p archive=&lt;path to .zip&gt;", or
+ * without an archive a synthetic SST of the given nesting depth. The setup checks that both visitors print every SST
+ * identically.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NestingBenchmark {
+
+	@Param("")
+	public String archive;
+
+	@Param("32")
+	public int sampleSize;
+
+	/**
+	 * Nesting depth of the synthetic SST, if no archive is given.
+	 */
+	@Param({ "16", "256" })
+	public int depth;
+
+	private final List<Context> sample = new ArrayList<>();
+	private SSTPrintingVisitorExtended recursive;
+	private SSTPrintingVisitorExtended iterative;
+	private SSTPrintingContextExtended context;
+
+	@Setup
+	public void setUp() {
+		recursive = new SSTPrintingVisitorExtended();
+		iterative = new IterativeSSTPrintingVisitor();
+		context = new SSTPrintingContextExtended();
+		if (archive.isEmpty()) {
+			Context synthetic = new Context();
+			synthetic.setSST(SyntheticSSTs.nestedBlocks(depth));
+			sample.add(synthetic);
+		} else {
+			sampleDeepest();
+		}
+		for (Context c : sample) {
+			String expected = print(recursive, c).toString();
+			if (!expected.equals(print(iterative, c).toString())) {
+				throw new IllegalStateException("visitors disagree on " + c.getSST().getEnclosingType());
+			}
+		}
+	}
+
+	/**
+	 * Keeps the sampleSize contexts whose printed SST has the deepest indentation.
+	 */
+	private void sampleDeepest() {
+		PriorityQueue<Nested> deepest = new PriorityQueue<>(Comparator.comparingInt((Nested n) -> n.nesting));
+		ReadingArchive contexts = new ReadingArchive(new File(archive));
+		try {
+			while (contexts.hasNext()) {
+				Context next = contexts.getNext(Context.class);
+				deepest.add(new Nested(next, nesting(next)));
+				if (deepest.size() > sampleSize) {
+					deepest.poll();
+				}
+			}
+		} finally {
+			contexts.close();
+		}
+		for (Nested n : deepest) {
+			sample.add(n.context);
+		}
+	}
+
+	private static class Nested {
+		final Context context;
+		final int nesting;
+
+		Nested(Context context, int nesting) {
+			this.context = context;
+			this.nesting = nesting;
+		}
+	}
+
+	private int nesting(Context c) {
+		String printed = print(recursive, c).toString();
+		int max = 0;
+		int tabs = -1;
+		for (int i = 0; i < printed.length(); i++) {
+			char ch = printed.charAt(i);
+			if (ch == '\n') {
+				tabs = 0;
+			} else if (ch == '\t' && tabs >= 0) {
+				max = Math.max(max, ++tabs);
+			} else {
+				tabs = -1;
+			}
+		}
+		return max;
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended recursive() {
+		return printSample(recursive);
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended iterative() {
+		return printSample(iterative);
+	}
+
+	private SSTPrintingContextExtended printSample(SSTPrintingVisitorExtended visitor) {
+		for (Context c : sample) {
+			print(visitor, c);
+		}
+		return context;
+	}
+
+	private SSTPrintingContextExtended print(SSTPrintingVisitorExtended visitor, Context c) {
+		context.reset().setTypeShape(c.getTypeShape());
+		c.getSST().accept(visitor, context);
+		return context;
+	}
+}
@@ -0,0 +1,55 @@
+package data.loader.sst.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cc.kave.commons.model.ssts.ISST;
+import data.loader.sst.SSTPrintingContextExtended;
+import data.loader.sst.SSTPrintingVisitorExtended;
+
+/**
+ * Measures the bytes allocated per printed SST for the synthetic SSTs of {@link SSTPrintingBenchmark}, without JMH:
+ * each SST is printed repeatedly with one visitor and one reused context, and the allocation of the printing thread is
+ * read from the JVM (HotSpot's com.sun.management.ThreadMXBean) after a warm-up. The figures are deterministic for a
+ * given JVM, so they can be compared before and after a change to the printer, e.g. to the rendering of references,
+ * whose cost shows in the placeholder and invocation chain SSTs. For allocation rates next to timings, run
+ * {@link SSTPrintingBenchmark} with "-prof gc" instead.
+ */
+public class PrintingAllocation {
+
+	public static void main(String[] args) {
+		if (args.length > 2) {
+			System.err.println("usage: PrintingAllocation [size] [iterations]");
+			System.exit(1);
+		}
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		Map<String, ISST> ssts = new LinkedHashMap<>();
+		ssts.put("invocationChain", SyntheticSSTs.invocationChain(size));
+		ssts.put("switchBlock", SyntheticSSTs.switchBlock(size));
+		ssts.put("placeholders", SyntheticSSTs.placeholders(size));
+		ssts.put("genericDeclarations", SyntheticSSTs.genericDeclarations(size, 2));
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		SSTPrintingVisitorExtended visitor = new SSTPrintingVisitorExtended();
+		SSTPrintingContextExtended context = new SSTPrintingContextExtended();
+		for (Map.Entry<String, ISST> sst : ssts.entrySet()) {
+			for (int i = 0; i < iterations; i++) {
+				print(visitor, context, sst.getValue());
+			}
+			long before = threads.getThreadAllocatedBytes(thread);
+			for (int i = 0; i < iterations; i++) {
+				print(visitor, context, sst.getValue());
+			}
+			long allocated = threads.getThreadAllocatedBytes(thread) - before;
+			System.out.printf("%-20s size %d: %,10.0f B/op%n", sst.getKey(), size, (double) allocated / iterations);
+		}
+	}
+
+	private static void print(SSTPrintingVisitorExtended visitor, SSTPrintingContextExtended context, ISST sst) {
+		context.reset();
+		sst.accept(visitor, context);
+	}
+}
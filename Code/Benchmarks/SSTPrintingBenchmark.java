@@ -0,0 +1,109 @@
+package data.loader.sst.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cc.kave.commons.model.naming.types.ITypeName;
+import cc.kave.commons.model.ssts.ISST;
+import data.loader.sst.SSTPrintingContextExtended;
+import data.loader.sst.SSTPrintingVisitorExtended;
+import data.loader.sst.TypeNameCache;
+
+/**
+ * Measures the printing cost of synthetic SSTs that isolate individual node types. Run with the GC profiler
+ * ("-prof gc") to get the bytes allocated per operation next to ns/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SSTPrintingBenchmark {
+
+	/**
+	 * Depth of invocation chains and generic types, number of switch cases, placeholders and declarations.
+	 */
+	@Param({ "4", "32" })
+	public int size;
+
+	private SSTPrintingVisitorExtended visitor;
+	private SSTPrintingContextExtended context;
+	private SSTPrintingContextExtended cachingContext;
+
+	private ISST invocationChain;
+	private ISST switchBlock;
+	private ISST placeholders;
+	private ISST genericDeclarations;
+	private ITypeName genericType;
+
+	@Setup
+	public void setUp() {
+		visitor = new SSTPrintingVisitorExtended();
+		context = new SSTPrintingContextExtended();
+		cachingContext = new SSTPrintingContextExtended();
+		cachingContext.setTypeNameCache(new TypeNameCache());
+		invocationChain = SyntheticSSTs.invocationChain(size);
+		switchBlock = SyntheticSSTs.switchBlock(size);
+		placeholders = SyntheticSSTs.placeholders(size);
+		genericDeclarations = SyntheticSSTs.genericDeclarations(size, 2);
+		genericType = SyntheticSSTs.genericType(size);
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended invocationChain() {
+		return print(invocationChain);
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended switchBlock() {
+		return print(switchBlock);
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended placeholderReinlining() {
+		return print(placeholders);
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended genericDeclarations() {
+		return print(genericDeclarations);
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended genericType() {
+		return context.reset().type(genericType);
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended genericTypeCached() {
+		return cachingContext.reset().type(genericType);
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended genericDeclarationsCached() {
+		genericDeclarations.accept(visitor, cachingContext.reset());
+		return cachingContext;
+	}
+
+	@Benchmark
+	public SSTPrintingContextExtended typeParameters() {
+		return context.reset().typeParameters(genericType.getTypeParameters());
+	}
+
+	private SSTPrintingContextExtended print(ISST sst) {
+		sst.accept(visitor, context.reset());
+		return context;
+	}
+}
@@ -0,0 +1,311 @@
+package data.loader.sst.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cc.kave.commons.model.naming.Names;
+import cc.kave.commons.model.naming.codeelements.IMethodName;
+import cc.kave.commons.model.naming.types.ITypeName;
+import cc.kave.commons.model.ssts.ISST;
+import cc.kave.commons.model.ssts.IStatement;
+import cc.kave.commons.model.ssts.blocks.CatchBlockKind;
+import cc.kave.commons.model.ssts.expressions.IAssignableExpression;
+import cc.kave.commons.model.ssts.expressions.ISimpleExpression;
+import cc.kave.commons.model.ssts.impl.SST;
+import cc.kave.commons.model.ssts.impl.blocks.CaseBlock;
+import cc.kave.commons.model.ssts.impl.blocks.CatchBlock;
+import cc.kave.commons.model.ssts.impl.blocks.DoLoop;
+import cc.kave.commons.model.ssts.impl.blocks.ForEachLoop;
+import cc.kave.commons.model.ssts.impl.blocks.ForLoop;
+import cc.kave.commons.model.ssts.impl.blocks.IfElseBlock;
+import cc.kave.commons.model.ssts.impl.blocks.LockBlock;
+import cc.kave.commons.model.ssts.impl.blocks.SwitchBlock;
+import cc.kave.commons.model.ssts.impl.blocks.TryBlock;
+import cc.kave.commons.model.ssts.impl.blocks.UncheckedBlock;
+import cc.kave.commons.model.ssts.impl.blocks.UsingBlock;
+import cc.kave.commons.model.ssts.impl.blocks.WhileLoop;
+import cc.kave.commons.model.ssts.impl.declarations.MethodDeclaration;
+import cc.kave.commons.model.ssts.impl.expressions.assignable.InvocationExpression;
+import cc.kave.commons.model.ssts.impl.expressions.assignable.LambdaExpression;
+import cc.kave.commons.model.ssts.impl.expressions.loopheader.LoopHeaderBlockExpression;
+import cc.kave.commons.model.ssts.impl.expressions.simple.ConstantValueExpression;
+import cc.kave.commons.model.ssts.impl.expressions.simple.ReferenceExpression;
+import cc.kave.commons.model.ssts.impl.references.VariableReference;
+import cc.kave.commons.model.ssts.impl.statements.Assignment;
+import cc.kave.commons.model.ssts.impl.statements.ExpressionStatement;
+import cc.kave.commons.model.ssts.impl.statements.LabelledStatement;
+import cc.kave.commons.model.ssts.impl.statements.VariableDeclaration;
+
+/**
+ * Builds synthetic SSTs that stress individual parts of the printer.
+ */
+final class SyntheticSSTs {
+
+	private static final String TYPE = "Bench.C, Bench, 1.0.0.0";
+	private static final String LIST = "System.Collections.Generic.List`1[[T -> %s]], mscorlib, 4.0.0.0";
+	private static final String DICTIONARY = "System.Collections.Generic.Dictionary`2[[TKey -> p:string],[TValue -> %s]], mscorlib, 4.0.0.0";
+
+	private SyntheticSSTs() {
+	}
+
+	/**
+	 * A method whose body is the chain "$0 = this.M0(); $1 = $0.M1(); ...; $n.Done();", which the printer re-inlines
+	 * into a single invocation chain of the given depth.
+	 */
+	static ISST invocationChain(int depth) {
+		MethodDeclaration method = method("Chain");
+		String receiver = "this";
+		for (int i = 0; i < depth; i++) {
+			method.getBody().add(declare("$" + i));
+			method.getBody().add(assign("$" + i, invoke(receiver, "M" + i)));
+			receiver = "$" + i;
+		}
+		method.getBody().add(expression(invoke(receiver, "Done")));
+		return type(method);
+	}
+
+	/**
+	 * A method with a switch over the given number of cases, each invoking a method.
+	 */
+	static ISST switchBlock(int cases) {
+		SwitchBlock block = new SwitchBlock();
+		block.setReference(ref("x"));
+		for (int i = 0; i < cases; i++) {
+			CaseBlock section = new CaseBlock();
+			section.setLabel(constant(Integer.toString(i)));
+			section.getBody().add(expression(invoke("this", "Case" + i)));
+			block.getSections().add(section);
+		}
+		block.getDefaultSection().add(expression(invoke("this", "Default")));
+		MethodDeclaration method = method("Switch");
+		method.getBody().add(block);
+		return type(method);
+	}
+
+	/**
+	 * A method that stores the given number of invocations in placeholders and then passes all of them to a single
+	 * invocation, so that every placeholder is re-inlined once.
+	 */
+	static ISST placeholders(int count) {
+		MethodDeclaration method = method("Placeholders");
+		List<ISimpleExpression> arguments = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			method.getBody().add(declare("$" + i));
+			method.getBody().add(assign("$" + i, invoke("this", "Get" + i)));
+			ReferenceExpression argument = new ReferenceExpression();
+			argument.setReference(ref("$" + i));
+			arguments.add(argument);
+		}
+		InvocationExpression use = invoke("this", "Use");
+		use.setParameters(arguments);
+		method.getBody().add(expression(use));
+		return type(method);
+	}
+
+	/**
+	 * Methods that declare locals of the nested generic type, see {@link #genericType(int)}.
+	 */
+	static ISST genericDeclarations(int count, int depth) {
+		MethodDeclaration method = method("Generics");
+		ITypeName type = genericType(depth);
+		for (int i = 0; i < count; i++) {
+			VariableDeclaration declaration = new VariableDeclaration();
+			declaration.setReference(ref("v" + i));
+			declaration.setType(type);
+			method.getBody().add(declaration);
+		}
+		return type(method);
+	}
+
+	/**
+	 * Dictionary&lt;string, List&lt;...List&lt;string&gt;...&gt;&gt; with the given number of nested lists.
+	 */
+	static ITypeName genericType(int depth) {
+		String element = "p:string";
+		for (int i = 0; i < depth; i++) {
+			element = String.format(LIST, element);
+		}
+		return Names.newType(String.format(DICTIONARY, element));
+	}
+
+	/**
+	 * A method whose body nests every kind of compound statement in turn to the given depth, around a single
+	 * invocation: if, for, foreach, while and do loops, switch, try with a general, an unnamed and a named catch,
+	 * using, lock, unchecked and labelled statements, as well as lambdas and loop header blocks.
+	 */
+	static ISST nestedBlocks(int depth) {
+		MethodDeclaration method = method("Nested");
+		List<IStatement> body = method.getBody();
+		for (int i = 0; i < depth; i++) {
+			body = nest(body, i);
+		}
+		body.add(expression(invoke("this", "Done")));
+		return type(method);
+	}
+
+	/**
+	 * Adds the compound statement of the given nesting level to the body and returns the block that the next level
+	 * goes into.
+	 */
+	private static List<IStatement> nest(List<IStatement> body, int level) {
+		switch (level % 13) {
+		case 0:
+			IfElseBlock ifElse = new IfElseBlock();
+			ifElse.setCondition(constant("true"));
+			ifElse.getElse().add(expression(invoke("this", "Else" + level)));
+			body.add(ifElse);
+			return ifElse.getThen();
+		case 1:
+			ForLoop forLoop = new ForLoop();
+			forLoop.getInit().add(declare("i" + level));
+			forLoop.setCondition(loopHeader(expression(invoke("this", "Next" + level))));
+			forLoop.getStep().add(expression(invoke("this", "Step" + level)));
+			body.add(forLoop);
+			return forLoop.getBody();
+		case 2:
+			ForEachLoop forEach = new ForEachLoop();
+			forEach.setDeclaration(declare("e" + level));
+			forEach.setLoopedReference(ref("items"));
+			body.add(forEach);
+			return forEach.getBody();
+		case 3:
+			WhileLoop whileLoop = new WhileLoop();
+			whileLoop.setCondition(constant("true"));
+			body.add(whileLoop);
+			return whileLoop.getBody();
+		case 4:
+			DoLoop doLoop = new DoLoop();
+			doLoop.setCondition(constant("false"));
+			body.add(doLoop);
+			return doLoop.getBody();
+		case 5:
+			SwitchBlock switchBlock = new SwitchBlock();
+			switchBlock.setReference(ref("x"));
+			CaseBlock first = new CaseBlock();
+			first.setLabel(constant("0"));
+			first.getBody().add(expression(invoke("this", "Case" + level)));
+			CaseBlock second = new CaseBlock();
+			second.setLabel(constant("1"));
+			switchBlock.getSections().add(first);
+			switchBlock.getSections().add(second);
+			switchBlock.getDefaultSection().add(expression(invoke("this", "Default" + level)));
+			body.add(switchBlock);
+			return second.getBody();
+		case 6:
+			TryBlock tryBlock = new TryBlock();
+			tryBlock.getBody().add(expression(invoke("this", "Try" + level)));
+			tryBlock.getCatchBlocks().add(catchBlock(CatchBlockKind.General, level));
+			tryBlock.getCatchBlocks().add(catchBlock(CatchBlockKind.Unnamed, level));
+			CatchBlock named = catchBlock(CatchBlockKind.Default, level);
+			tryBlock.getCatchBlocks().add(named);
+			tryBlock.getFinally().add(expression(invoke("this", "Finally" + level)));
+			body.add(tryBlock);
+			return named.getBody();
+		case 7:
+			UsingBlock using = new UsingBlock();
+			using.setReference(ref("resource"));
+			body.add(using);
+			return using.getBody();
+		case 8:
+			LockBlock lock = new LockBlock();
+			lock.setReference(ref("monitor"));
+			body.add(lock);
+			return lock.getBody();
+		case 9:
+			UncheckedBlock unchecked = new UncheckedBlock();
+			body.add(unchecked);
+			return unchecked.getBody();
+		case 10:
+			WhileLoop labelledLoop = new WhileLoop();
+			labelledLoop.setCondition(constant("true"));
+			LabelledStatement labelled = new LabelledStatement();
+			labelled.setLabel("L" + level);
+			labelled.setStatement(labelledLoop);
+			body.add(labelled);
+			return labelledLoop.getBody();
+		case 11:
+			LambdaExpression lambda = new LambdaExpression();
+			lambda.setName(Names.newLambda("[p:void] ([p:int] x" + level + ")"));
+			body.add(declare("f" + level));
+			body.add(assign("f" + level, lambda));
+			return lambda.getBody();
+		default:
+			LoopHeaderBlockExpression header = loopHeader(expression(invoke("this", "Check" + level)));
+			WhileLoop headerLoop = new WhileLoop();
+			headerLoop.setCondition(header);
+			headerLoop.getBody().add(expression(invoke("this", "Loop" + level)));
+			body.add(headerLoop);
+			return header.getBody();
+		}
+	}
+
+	private static CatchBlock catchBlock(CatchBlockKind kind, int level) {
+		CatchBlock block = new CatchBlock();
+		block.setKind(kind);
+		block.setParameter(Names.newParameter("[System.Exception, mscorlib, 4.0.0.0] e" + level));
+		block.getBody().add(expression(invoke("this", "Catch" + kind + level)));
+		return block;
+	}
+
+	private static LoopHeaderBlockExpression loopHeader(IStatement statement) {
+		LoopHeaderBlockExpression header = new LoopHeaderBlockExpression();
+		header.getBody().add(statement);
+		return header;
+	}
+
+	private static ISST type(MethodDeclaration method) {
+		SST sst = new SST();
+		sst.setEnclosingType(Names.newType(TYPE));
+		sst.getMethods().add(method);
+		return sst;
+	}
+
+	private static MethodDeclaration method(String name) {
+		MethodDeclaration method = new MethodDeclaration();
+		method.setName(Names.newMethod("[p:void] [" + TYPE + "]." + name + "()"));
+		return method;
+	}
+
+	private static IMethodName methodName(String name) {
+		return Names.newMethod("[" + TYPE + "] [" + TYPE + "]." + name + "()");
+	}
+
+	private static VariableReference ref(String id) {
+		VariableReference ref = new VariableReference();
+		ref.setIdentifier(id);
+		return ref;
+	}
+
+	private static VariableDeclaration declare(String id) {
+		VariableDeclaration declaration = new VariableDeclaration();
+		declaration.setReference(ref(id));
+		declaration.setType(Names.newType(TYPE));
+		return declaration;
+	}
+
+	private static Assignment assign(String id, IAssignableExpression expression) {
+		Assignment assignment = new Assignment();
+		assignment.setReference(ref(id));
+		assignment.setExpression(expression);
+		return assignment;
+	}
+
+	private static InvocationExpression invoke(String receiver, String name) {
+		InvocationExpression invocation = new InvocationExpression();
+		invocation.setReference(ref(receiver));
+		invocation.setMethodName(methodName(name));
+		return invocation;
+	}
+
+	private static IStatement expression(InvocationExpression expression) {
+		ExpressionStatement statement = new ExpressionStatement();
+		statement.setExpression(expression);
+		return statement;
+	}
+
+	private static ConstantValueExpression constant(String value) {
+		ConstantValueExpression constant = new ConstantValueExpression();
+		constant.setValue(value);
+		return constant;
+	}
+}
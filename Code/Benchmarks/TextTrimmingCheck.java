@@ -0,0 +1,108 @@
+package data.loader.sst.benchmarks;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import data.loader.sst.SSTPrintingContextExtended;
+import data.loader.sst.WriterTokenSink;
+
+/**
+ * Checks that {@link SSTPrintingContextExtended#text(String)}, which appends a trimmed view of the token without
+ * creating a trimmed copy, prints exactly the bytes of the former "\t" + s.trim(): on fixed edge cases and on random
+ * strings mixing letters, ASCII control characters, DEL, non-ASCII whitespace (no-break space, the Unicode spaces,
+ * line and paragraph separators, NEL, the byte order mark) and surrogate pairs, for one token per context and for a
+ * sequence of tokens per context, in memory and streamed to a sink through a small buffer. Prints the first
+ * difference and exits with status 1 if the output differs.
+ */
+public class TextTrimmingCheck {
+
+	private static final char[] ALPHABET = buildAlphabet();
+
+	private static final String[] EDGE_CASES = { "", " ", "\t", "\n", "\u0000", "\u001f", " \u0000a\u0001 ", "a",
+			" a ", "\ta\t", "a b", "\u00a0a\u00a0", "\u2003a\u3000", "\u0085a\u0085", "\ufeffa\ufeff", "\u2028\u2029",
+			"\u007fa\u007f", " \ud83d\ude00 ", "\ud83d\ude00\u0000", "\u0020\u0021", "\u0000\u0000\u0000" };
+
+	public static void main(String[] args) {
+		if (args.length > 2) {
+			System.err.println("usage: TextTrimmingCheck [random strings] [seed]");
+			System.exit(1);
+		}
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+		Random random = new Random(seed);
+		String[] strings = Arrays.copyOf(EDGE_CASES, EDGE_CASES.length + count);
+		for (int i = EDGE_CASES.length; i < strings.length; i++) {
+			strings[i] = randomString(random);
+		}
+		for (String s : strings) {
+			check(new String[] { s });
+		}
+		for (int i = 0; i + 8 <= strings.length; i += 8) {
+			check(Arrays.copyOfRange(strings, i, i + 8));
+		}
+		System.out.println(strings.length + " strings printed identically to \"\\t\" + s.trim()");
+	}
+
+	private static void check(String[] tokens) {
+		StringBuilder expected = new StringBuilder();
+		SSTPrintingContextExtended inMemory = new SSTPrintingContextExtended();
+		StringWriter streamed = new StringWriter();
+		SSTPrintingContextExtended sinkBacked = new SSTPrintingContextExtended(new WriterTokenSink(streamed), 16);
+		for (String token : tokens) {
+			expected.append("\t").append(token.trim());
+			inMemory.text(token);
+			sinkBacked.text(token);
+		}
+		sinkBacked.flush();
+		compare(tokens, expected.toString(), inMemory.toString(), "in memory");
+		compare(tokens, expected.toString(), streamed.toString(), "streamed");
+	}
+
+	private static void compare(String[] tokens, String expected, String actual, String mode) {
+		byte[] expectedBytes = expected.getBytes(StandardCharsets.UTF_8);
+		byte[] actualBytes = actual.getBytes(StandardCharsets.UTF_8);
+		if (!Arrays.equals(expectedBytes, actualBytes)) {
+			System.err.printf("output differs (%s) for %s:%n  expected: %s%n  actual:   %s%n", mode, escape(tokens),
+					Arrays.toString(expectedBytes), Arrays.toString(actualBytes));
+			System.exit(1);
+		}
+	}
+
+	private static String randomString(Random random) {
+		char[] chars = new char[random.nextInt(12)];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+			// a surrogate pair, or an unpaired surrogate at the end
+			if (Character.isHighSurrogate(chars[i]) && i + 1 < chars.length) {
+				chars[++i] = '\ude00';
+			}
+		}
+		return new String(chars);
+	}
+
+	private static char[] buildAlphabet() {
+		StringBuilder alphabet = new StringBuilder("abcXYZ09_.<>()");
+		for (char c = 0; c <= ' '; c++) {
+			alphabet.append(c);
+		}
+		alphabet.append("\u007f\u0085\u00a0\u1680\u180e\u2028\u2029\u202f\u205f\u3000\ufeff\ud83d\u00e9");
+		for (char c = '\u2000'; c <= '\u200b'; c++) {
+			alphabet.append(c);
+		}
+		return alphabet.toString().toCharArray();
+	}
+
+	private static String escape(String[] tokens) {
+		StringBuilder escaped = new StringBuilder();
+		for (String token : tokens) {
+			escaped.append(escaped.length() > 0 ? ", \"" : "\"");
+			for (char c : token.toCharArray()) {
+				escaped.append(c >= ' ' && c < 0x7f ? Character.toString(c) : String.format("\\u%04x", (int) c));
+			}
+			escaped.append('"');
+		}
+		return escaped.toString();
+	}
+}
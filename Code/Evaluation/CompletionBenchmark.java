@@ -0,0 +1,277 @@
+package data.evaluation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import data.loader.events.CompletionEvent;
+import data.loader.events.CompletionEventReader;
+import data.loader.sst.CursorPosition;
+
+/**
+ * Evaluates a {@link CompletionPredictor} on the completion events of the plain-text benchmark data. The predictor is
+ * queried for the top-k completions at the completion position of each event only, and the rank of the applied
+ * completion among them is scored as top-1, top-5 and mean reciprocal rank per completion category.
+ * <p>
+ * By default, the position is the recorded completion index in the event's content file. Alternatively, the queries
+ * can be made on the printed SSTs of the events, as written by SSTCorpusConverter: the position is then taken from the
+ * ".cursor" sidecar of each printed line, see {@link #setPrintedRoot(Path)}.
+ * <p>
+ * Developers are evaluated in parallel on a fork-join pool, each with its own predictor that sees the developer's
+ * events in the order of their event stream. Results are passed on as soon as they are computed.
+ * <p>
+ * Each query to the predictor is timed, after it is prepared (see {@link CompletionPredictor#prepare(CompletionQuery)}),
+ * and the latencies are reported per category as percentiles together with the
+ * fraction of events answered before the developer's first selection. Since the first run in a JVM also measures class
+ * loading and compilation, {@link #report(ForkJoinPool, int, PrintStream)} reports it separately from the warm runs
+ * that follow.
+ */
+public class CompletionBenchmark {
+
+	/** The category under which the scores of all events are reported. */
+	public static final String ALL = "ALL";
+
+	/** The number of completions queried per event by default. */
+	public static final int DEFAULT_LIMIT = 1000;
+
+	/** The number of runs after the cold run by default; only the last one is reported. */
+	public static final int DEFAULT_WARM_RUNS = 1;
+
+	private final Path _root;
+	private final Supplier<? extends CompletionPredictor> _predictors;
+	private final int _limit;
+	private Path _printedRoot;
+
+	/**
+	 * @param root
+	 *            the directory that holds one directory per developer
+	 * @param predictors
+	 *            creates the predictor of each developer
+	 */
+	public CompletionBenchmark(Path root, Supplier<? extends CompletionPredictor> predictors) {
+		this(root, predictors, DEFAULT_LIMIT);
+	}
+
+	/**
+	 * @param root
+	 *            the directory that holds one directory per developer
+	 * @param predictors
+	 *            creates the predictor of each developer
+	 * @param limit
+	 *            the number of completions queried per event
+	 */
+	public CompletionBenchmark(Path root, Supplier<? extends CompletionPredictor> predictors, int limit) {
+		_root = root;
+		_predictors = predictors;
+		_limit = limit;
+	}
+
+	public Path getPrintedRoot() {
+		return _printedRoot;
+	}
+
+	/**
+	 * Queries the events on their printed SSTs below the given directory instead of on their content files. The
+	 * printed line of an event is read from "&lt;developer&gt;/&lt;event&gt;.txt", or from the only ".txt" file in the
+	 * directory "&lt;developer&gt;/&lt;event&gt;", and its cursor position from the ".cursor" file next to it. Null
+	 * queries the content files.
+	 */
+	public void setPrintedRoot(Path printedRoot) {
+		_printedRoot = printedRoot;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println(
+					"usage: CompletionBenchmark <completions dir> <predictor class> [threads] [k] [printed SST dir]");
+			System.exit(1);
+		}
+		Class<? extends CompletionPredictor> predictor = Class.forName(args[1])
+				.asSubclass(CompletionPredictor.class);
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int limit = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_LIMIT;
+		CompletionBenchmark benchmark = new CompletionBenchmark(Paths.get(args[0]), () -> {
+			try {
+				return predictor.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalArgumentException("cannot create " + predictor.getName(), e);
+			}
+		}, limit);
+		if (args.length > 4) {
+			benchmark.setPrintedRoot(Paths.get(args[4]));
+		}
+		benchmark.report(new ForkJoinPool(threads), DEFAULT_WARM_RUNS, System.out);
+	}
+
+	/**
+	 * Runs the benchmark once cold, printing the result of every event and the scores, and then the given number of
+	 * times warm with new predictors, printing the scores of the last run.
+	 * 
+	 * @return the scores of the cold run
+	 */
+	public Map<String, Scores> report(ForkJoinPool pool, int warmRuns, PrintStream out) throws IOException {
+		Map<String, Scores> cold = run(pool, out::println);
+		out.println();
+		out.println("cold");
+		print(cold, out);
+		Map<String, Scores> warm = null;
+		for (int i = 0; i < warmRuns; i++) {
+			warm = run(pool, r -> {
+			});
+		}
+		if (warm != null) {
+			out.println();
+			out.println("warm");
+			print(warm, out);
+		}
+		return cold;
+	}
+
+	/**
+	 * Prints a table of scores per category, with latencies in milliseconds.
+	 */
+	public static void print(Map<String, Scores> scores, PrintStream out) {
+		out.println("category\tcount\ttop1\ttop5\tmrr\tp50\tp99\tp999\tintime");
+		for (Map.Entry<String, Scores> entry : scores.entrySet()) {
+			out.println(entry.getKey() + "\t" + entry.getValue());
+		}
+	}
+
+	/**
+	 * Evaluates all developers, each with a new predictor.
+	 * 
+	 * @param results
+	 *            receives the result of every event as it completes; calls are serialized, so it need not be
+	 *            thread-safe
+	 * @return the scores per completion category, and of all events under {@link #ALL}
+	 */
+	public Map<String, Scores> run(ForkJoinPool pool, Consumer<? super EventResult> results) throws IOException {
+		Map<String, Scores> scores = new TreeMap<>();
+		List<EvaluateDeveloper> tasks = new ArrayList<>();
+		for (Path developer : CompletionEventReader.developers(_root)) {
+			tasks.add(new EvaluateDeveloper(developer, results, scores));
+		}
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		return scores;
+	}
+
+	private class EvaluateDeveloper extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Path _developer;
+		private final Consumer<? super EventResult> _results;
+		private final Map<String, Scores> _scores;
+
+		EvaluateDeveloper(Path developer, Consumer<? super EventResult> results, Map<String, Scores> scores) {
+			_developer = developer;
+			_results = results;
+			_scores = scores;
+		}
+
+		@Override
+		protected void compute() {
+			List<CompletionEvent> events;
+			try {
+				events = CompletionEventReader.readDeveloper(_developer);
+			} catch (IOException e) {
+				System.err.println("cannot read the events of " + _developer + ": " + e);
+				return;
+			}
+			CompletionPredictor predictor = _predictors.get();
+			Map<String, Scores> scores = new TreeMap<>();
+			for (CompletionEvent event : events) {
+				EventResult result = evaluate(predictor, event);
+				scores.computeIfAbsent(event.getCategory(), c -> new Scores()).add(result);
+				scores.computeIfAbsent(ALL, c -> new Scores()).add(result);
+				synchronized (_results) {
+					_results.accept(result);
+				}
+			}
+			synchronized (_scores) {
+				for (Map.Entry<String, Scores> entry : scores.entrySet()) {
+					_scores.computeIfAbsent(entry.getKey(), c -> new Scores()).add(entry.getValue());
+				}
+			}
+		}
+	}
+
+	private EventResult evaluate(CompletionPredictor predictor, CompletionEvent event) {
+		try {
+			CompletionQuery query = predictor.prepare(query(event));
+			long start = System.nanoTime();
+			List<String> predictions = predictor.predict(query);
+			long latency = System.nanoTime() - start;
+			return new EventResult(event, rank(predictions, event.getCompletion()), false, latency);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("cannot evaluate " + event + ": " + e);
+			return new EventResult(event, 0, true, 0);
+		}
+	}
+
+	private CompletionQuery query(CompletionEvent event) throws IOException {
+		if (_printedRoot == null) {
+			List<String> tokens = CompletionEventReader.readTokens(event, event.getCompletionIndex());
+			return CompletionQuery.at(event, tokens, _limit);
+		}
+		Path printed = printedFile(event);
+		String name = printed.getFileName().toString();
+		Path sidecar = printed.resolveSibling(name.substring(0, name.length() - ".txt".length()) + ".cursor");
+		CursorPosition cursor;
+		try (BufferedReader in = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8)) {
+			cursor = CursorPosition.parse(in.readLine());
+		}
+		String line;
+		try (BufferedReader in = Files.newBufferedReader(printed, StandardCharsets.UTF_8)) {
+			line = in.readLine();
+		}
+		return CompletionQuery.atCursor(event, line, cursor, _limit);
+	}
+
+	private Path printedFile(CompletionEvent event) throws IOException {
+		Path directory = _printedRoot.resolve(event.getDeveloper()).resolve(event.getEventId());
+		Path txt = directory.resolveSibling(directory.getFileName() + ".txt");
+		if (Files.isRegularFile(txt)) {
+			return txt;
+		}
+		List<Path> txts;
+		try (Stream<Path> files = Files.list(directory)) {
+			txts = files.filter(p -> p.toString().endsWith(".txt")).collect(Collectors.toList());
+		}
+		if (txts.size() != 1) {
+			throw new IOException("expected one printed SST in " + directory + ", found " + txts.size());
+		}
+		return txts.get(0);
+	}
+
+	/**
+	 * Returns the 1-based rank of the completion among the predictions, or 0 if it is not among them.
+	 */
+	static int rank(List<String> predictions, String completion) {
+		for (int i = 0; i < predictions.size(); i++) {
+			if (completion.equals(predictions.get(i))) {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,28 @@
+package data.evaluation;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A completion model under evaluation. The benchmark creates one predictor per developer and queries it for the
+ * developer's events in the order of their event stream, so predictors may keep state across the events of one
+ * developer.
+ */
+public interface CompletionPredictor {
+
+	/**
+	 * Predicts the completions at the queried position.
+	 * 
+	 * @return at most {@link CompletionQuery#getLimit()} completions, best first
+	 */
+	List<String> predict(CompletionQuery query);
+
+	/**
+	 * Prepares a query before it is passed to {@link #predict(CompletionQuery)}, e.g. by reading the data of the event
+	 * that the prediction needs from disk; the benchmark does not time it. Returns the query to predict, by default the
+	 * given one.
+	 */
+	default CompletionQuery prepare(CompletionQuery query) throws IOException {
+		return query;
+	}
+}
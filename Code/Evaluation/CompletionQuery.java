@@ -0,0 +1,92 @@
+package data.evaluation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import data.loader.events.CompletionEvent;
+import data.loader.sst.CursorPosition;
+
+/**
+ * A request for the top-k completions at a single position: the tokens that precede the position, the text typed at
+ * it so far, and the number of completions wanted.
+ */
+public class CompletionQuery {
+
+	private final CompletionEvent _event;
+	private final List<String> _context;
+	private final String _prefix;
+	private final int _limit;
+
+	public CompletionQuery(CompletionEvent event, List<String> context, String prefix, int limit) {
+		_event = event;
+		_context = Collections.unmodifiableList(context);
+		_prefix = prefix;
+		_limit = limit;
+	}
+
+	/**
+	 * Queries the completion index of an event in the tokens of its content file. The prefix is the one recorded for
+	 * the event.
+	 */
+	public static CompletionQuery at(CompletionEvent event, List<String> tokens, int limit) {
+		int index = Math.min(event.getCompletionIndex(), tokens.size());
+		return new CompletionQuery(event, new ArrayList<>(tokens.subList(0, index)), event.getPrefix(), limit);
+	}
+
+	/**
+	 * Queries the cursor position in the printed output of the completion's SST. Only the output up to the cursor is
+	 * read: the tokens before the cursor token form the context, and the part of the cursor token before the cursor
+	 * is the prefix.
+	 * 
+	 * @param printed
+	 *            the output, as printed by the SST printer or as a single line of tab-separated tokens
+	 * @param cursor
+	 *            the cursor position recorded for that output
+	 */
+	public static CompletionQuery atCursor(CompletionEvent event, CharSequence printed, CursorPosition cursor,
+			int limit) {
+		int end = (int) Math.min(cursor.getCharOffset(), printed.length());
+		List<String> context = new ArrayList<>(cursor.getTokenIndex());
+		int start = 0;
+		for (int i = 0; i < end; i++) {
+			char c = printed.charAt(i);
+			if (c == '\t' || c == '\n') {
+				if (i > start) {
+					context.add(printed.subSequence(start, i).toString());
+				}
+				start = i + 1;
+			}
+		}
+		if (context.size() != cursor.getTokenIndex()) {
+			throw new IllegalArgumentException("cursor at token " + cursor.getTokenIndex() + " but " + context.size()
+					+ " tokens precede offset " + cursor.getCharOffset());
+		}
+		return new CompletionQuery(event, context, printed.subSequence(start, end).toString(), limit);
+	}
+
+	public CompletionEvent getEvent() {
+		return _event;
+	}
+
+	/**
+	 * The tokens that precede the queried position.
+	 */
+	public List<String> getContext() {
+		return _context;
+	}
+
+	/**
+	 * The text typed at the queried position so far, empty if none.
+	 */
+	public String getPrefix() {
+		return _prefix;
+	}
+
+	/**
+	 * The maximum number of completions to return.
+	 */
+	public int getLimit() {
+		return _limit;
+	}
+}
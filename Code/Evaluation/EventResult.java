@@ -0,0 +1,66 @@
+package data.evaluation;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import data.loader.events.CompletionEvent;
+
+/**
+ * The outcome of predicting one completion event.
+ */
+public class EventResult {
+
+	private final CompletionEvent _event;
+	private final int _rank;
+	private final boolean _failed;
+	private final long _latency;
+
+	public EventResult(CompletionEvent event, int rank, boolean failed, long latency) {
+		_event = event;
+		_rank = rank;
+		_failed = failed;
+		_latency = latency;
+	}
+
+	public CompletionEvent getEvent() {
+		return _event;
+	}
+
+	/**
+	 * The 1-based rank of the correct completion among the predictions, or 0 if it was not predicted.
+	 */
+	public int getRank() {
+		return _rank;
+	}
+
+	/**
+	 * Whether the event could not be evaluated, because its data could not be read or the predictor failed. Such
+	 * events count as not predicted.
+	 */
+	public boolean isFailed() {
+		return _failed;
+	}
+
+	/**
+	 * The time in nanoseconds the predictor took to answer the query.
+	 */
+	public long getLatency() {
+		return _latency;
+	}
+
+	/**
+	 * Whether the predictor answered before the developer's first selection in the completion list, or before the
+	 * completion was applied if nothing was selected.
+	 */
+	public boolean isAnsweredInTime() {
+		List<CompletionEvent.Selection> selections = _event.getSelections();
+		long budget = selections.isEmpty() ? _event.getDuration() : selections.get(0).getTime();
+		return _latency < TimeUnit.MILLISECONDS.toNanos(budget);
+	}
+
+	@Override
+	public String toString() {
+		return _event.getDeveloper() + "\t" + _event.getEventId() + "\t" + _event.getCategory() + "\t" + _rank
+				+ String.format("\t%.3f", _latency / 1e6) + (_failed ? "\tFAILED" : "");
+	}
+}
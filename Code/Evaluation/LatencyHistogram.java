@@ -0,0 +1,78 @@
+package data.evaluation;
+
+/**
+ * Histogram of latencies in nanoseconds with log-linear buckets: exact below 128 ns, and within 1/64 (about 1.6%)
+ * of the recorded value above. Recording is allocation-free and takes constant time.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKETS = 64;
+	private static final int LINEAR = 2 * SUB_BUCKETS;
+	private static final int BUCKETS = LINEAR + (63 - 7) * SUB_BUCKETS;
+
+	private final long[] _counts = new long[BUCKETS];
+	private long _count;
+	private long _max;
+
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		_counts[bucket(nanos)]++;
+		_count++;
+		_max = Math.max(_max, nanos);
+	}
+
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			_counts[i] += other._counts[i];
+		}
+		_count += other._count;
+		_max = Math.max(_max, other._max);
+	}
+
+	public long getCount() {
+		return _count;
+	}
+
+	public long getMax() {
+		return _max;
+	}
+
+	/**
+	 * Returns the latency below which the given fraction of the recorded latencies lie, e.g. 0.99 for the 99th
+	 * percentile, or 0 if nothing was recorded.
+	 */
+	public long percentile(double fraction) {
+		if (_count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(fraction * _count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += _counts[i];
+			if (seen >= rank) {
+				return Math.min(_max, highestValue(i));
+			}
+		}
+		return _max;
+	}
+
+	private static int bucket(long value) {
+		if (value < LINEAR) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int mantissa = (int) (value >>> (exponent - 6));
+		return LINEAR + (exponent - 7) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+	}
+
+	private static long highestValue(int bucket) {
+		if (bucket < LINEAR) {
+			return bucket;
+		}
+		int exponent = (bucket - LINEAR) / SUB_BUCKETS + 7;
+		long mantissa = (bucket - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((mantissa + 1) << (exponent - 6)) - 1;
+	}
+}
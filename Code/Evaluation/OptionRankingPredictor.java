@@ -0,0 +1,31 @@
+package data.evaluation;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Restricts the predictions of another predictor to the options the IDE presented for the event, see
+ * {@link PrefixRanker}. Events without recorded options are passed through unchanged.
+ */
+public class OptionRankingPredictor implements CompletionPredictor {
+
+	private final CompletionPredictor _predictor;
+
+	public OptionRankingPredictor(CompletionPredictor predictor) {
+		_predictor = predictor;
+	}
+
+	@Override
+	public CompletionQuery prepare(CompletionQuery query) throws IOException {
+		return _predictor.prepare(query);
+	}
+
+	@Override
+	public List<String> predict(CompletionQuery query) {
+		List<String> predictions = _predictor.predict(query);
+		if (query.getEvent().getOptions().isEmpty()) {
+			return predictions;
+		}
+		return PrefixRanker.of(query.getEvent()).rank(predictions, query.getPrefix(), query.getLimit());
+	}
+}
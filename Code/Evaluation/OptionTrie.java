@@ -0,0 +1,93 @@
+package data.evaluation;
+
+import java.util.Arrays;
+
+/**
+ * Case-insensitive trie over a sorted array of keys. Every node covers the contiguous range of keys that start with
+ * its path, so a prefix query walks one node per character of the prefix and returns the range of matching keys.
+ */
+final class OptionTrie {
+
+	private final int[] _lo;
+	private final int[] _hi;
+	private final int[] _childStart;
+	private final int[] _childCount;
+	private final char[] _childChars;
+	private final int[] _childNodes;
+
+	/**
+	 * @param keys
+	 *            the keys, folded with {@link #fold(char)} and sorted
+	 */
+	OptionTrie(String[] keys) {
+		int capacity = 1;
+		for (String key : keys) {
+			capacity += key.length();
+		}
+		_lo = new int[capacity];
+		_hi = new int[capacity];
+		_childStart = new int[capacity];
+		_childCount = new int[capacity];
+		_childChars = new char[capacity];
+		_childNodes = new int[capacity];
+		int[] depths = new int[capacity];
+
+		_lo[0] = 0;
+		_hi[0] = keys.length;
+		int nodes = 1;
+		int children = 0;
+		// breadth-first, so that the children of a node are added consecutively
+		for (int node = 0; node < nodes; node++) {
+			int depth = depths[node];
+			_childStart[node] = children;
+			int i = _lo[node];
+			while (i < _hi[node] && keys[i].length() == depth) {
+				i++;
+			}
+			while (i < _hi[node]) {
+				char c = keys[i].charAt(depth);
+				int j = i + 1;
+				while (j < _hi[node] && keys[j].charAt(depth) == c) {
+					j++;
+				}
+				_lo[nodes] = i;
+				_hi[nodes] = j;
+				depths[nodes] = depth + 1;
+				_childChars[children] = c;
+				_childNodes[children] = nodes;
+				children++;
+				nodes++;
+				i = j;
+			}
+			_childCount[node] = children - _childStart[node];
+		}
+	}
+
+	/**
+	 * Returns the range of keys that start with the prefix, ignoring case, as {start, end}.
+	 */
+	int[] range(CharSequence prefix) {
+		int node = 0;
+		for (int i = 0; i < prefix.length(); i++) {
+			int start = _childStart[node];
+			int child = Arrays.binarySearch(_childChars, start, start + _childCount[node], fold(prefix.charAt(i)));
+			if (child < 0) {
+				return new int[] { 0, 0 };
+			}
+			node = _childNodes[child];
+		}
+		return new int[] { _lo[node], _hi[node] };
+	}
+
+	static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	static String fold(String s) {
+		char[] chars = s.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = fold(chars[i]);
+		}
+		return new String(chars);
+	}
+}
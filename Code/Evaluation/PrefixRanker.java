@@ -0,0 +1,110 @@
+package data.evaluation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.loader.events.CompletionEvent;
+
+/**
+ * Ranks a model's predictions against the options the IDE presented for a completion. Only options that start with
+ * the typed prefix, ignoring case, are eligible; they are found through a case-insensitive trie over the options. The
+ * eligible options the model predicted come first, by model score, and the remaining ones follow in alphabetical
+ * order, the way the IDE lists them. Options of the same name, e.g. the overloads of a method, are ranked as one.
+ * <p>
+ * A ranker is built once per event and is immutable afterwards.
+ */
+public class PrefixRanker {
+
+	private final String[] _options;
+	private final OptionTrie _trie;
+	private final Map<String, Integer> _positions;
+
+	/**
+	 * @param options
+	 *            the presented options; of options of the form "name\tdetails", only the name is used
+	 */
+	public PrefixRanker(List<String> options) {
+		List<String> names = new ArrayList<>(options.size());
+		for (String option : options) {
+			int tab = option.indexOf('\t');
+			names.add(tab < 0 ? option : option.substring(0, tab));
+		}
+		String[] folded = new String[names.size()];
+		Integer[] order = new Integer[names.size()];
+		for (int i = 0; i < folded.length; i++) {
+			folded[i] = OptionTrie.fold(names.get(i));
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparing((Integer i) -> folded[i]).thenComparing(i -> names.get(i)));
+
+		// options of the same name, e.g. overloads, are listed once
+		List<String> distinct = new ArrayList<>(order.length);
+		List<String> keys = new ArrayList<>(order.length);
+		_positions = new HashMap<>(2 * order.length);
+		for (Integer i : order) {
+			String name = names.get(i);
+			if (_positions.putIfAbsent(name, distinct.size()) == null) {
+				distinct.add(name);
+				keys.add(folded[i]);
+			}
+		}
+		_options = distinct.toArray(new String[distinct.size()]);
+		_trie = new OptionTrie(keys.toArray(new String[keys.size()]));
+	}
+
+	public static PrefixRanker of(CompletionEvent event) {
+		return new PrefixRanker(event.getOptions());
+	}
+
+	/**
+	 * Returns the options that start with the prefix, ignoring case, in alphabetical order.
+	 */
+	public List<String> options(String prefix) {
+		int[] range = _trie.range(prefix);
+		return Arrays.asList(_options).subList(range[0], range[1]);
+	}
+
+	/**
+	 * Ranks predictions given best first.
+	 */
+	public List<String> rank(List<String> predictions, String prefix, int k) {
+		return rank(predictions, null, prefix, k);
+	}
+
+	/**
+	 * Returns the k best options that start with the prefix: the predicted ones by score, then the others.
+	 * 
+	 * @param scores
+	 *            the score of each prediction, higher is better, or null if the predictions are given best first
+	 */
+	public List<String> rank(List<String> predictions, double[] scores, String prefix, int k) {
+		int[] range = _trie.range(prefix);
+		TopKHeap top = new TopKHeap(k);
+		boolean[] seen = new boolean[range[1] - range[0]];
+		for (int i = 0; i < predictions.size(); i++) {
+			Integer position = _positions.get(predictions.get(i));
+			if (position == null || position < range[0] || position >= range[1] || seen[position - range[0]]) {
+				continue;
+			}
+			seen[position - range[0]] = true;
+			top.offer(position, scores != null ? scores[i] : -i);
+		}
+		int[] best = top.drain();
+		List<String> ranked = new ArrayList<>(Math.min(k, seen.length));
+		boolean[] taken = new boolean[seen.length];
+		for (int position : best) {
+			ranked.add(_options[position]);
+			taken[position - range[0]] = true;
+		}
+		for (int position = range[0]; position < range[1] && ranked.size() < k; position++) {
+			if (!taken[position - range[0]]) {
+				ranked.add(_options[position]);
+			}
+		}
+		return ranked;
+	}
+}
@@ -0,0 +1,89 @@
+package data.evaluation;
+
+/**
+ * Accumulates the top-1 and top-5 accuracy and the mean reciprocal rank of a set of completions, and the latencies of
+ * the predictor together with the fraction of completions it answered before the developer's first selection.
+ */
+public class Scores {
+
+	private int _count;
+	private int _top1;
+	private int _top5;
+	private double _reciprocalRanks;
+	private final LatencyHistogram _latencies = new LatencyHistogram();
+	private int _inTime;
+
+	/**
+	 * Adds the rank and, unless the event failed, the latency of a result.
+	 */
+	public void add(EventResult result) {
+		add(result.getRank());
+		if (!result.isFailed()) {
+			_latencies.record(result.getLatency());
+			if (result.isAnsweredInTime()) {
+				_inTime++;
+			}
+		}
+	}
+
+	/**
+	 * @param rank
+	 *            the 1-based rank of the correct completion among the predictions, or 0 if it was not predicted
+	 */
+	public void add(int rank) {
+		_count++;
+		if (rank > 0) {
+			if (rank == 1) {
+				_top1++;
+			}
+			if (rank <= 5) {
+				_top5++;
+			}
+			_reciprocalRanks += 1.0 / rank;
+		}
+	}
+
+	public void add(Scores other) {
+		_count += other._count;
+		_top1 += other._top1;
+		_top5 += other._top5;
+		_reciprocalRanks += other._reciprocalRanks;
+		_latencies.add(other._latencies);
+		_inTime += other._inTime;
+	}
+
+	public int getCount() {
+		return _count;
+	}
+
+	public double getTop1() {
+		return _count == 0 ? 0 : (double) _top1 / _count;
+	}
+
+	public double getTop5() {
+		return _count == 0 ? 0 : (double) _top5 / _count;
+	}
+
+	public double getMrr() {
+		return _count == 0 ? 0 : _reciprocalRanks / _count;
+	}
+
+	public LatencyHistogram getLatencies() {
+		return _latencies;
+	}
+
+	/**
+	 * The fraction of timed completions that the predictor answered before the developer's first selection.
+	 */
+	public double getInTime() {
+		long timed = _latencies.getCount();
+		return timed == 0 ? 0 : (double) _inTime / timed;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d\t%.4f\t%.4f\t%.4f\t%.3f\t%.3f\t%.3f\t%.4f", _count, getTop1(), getTop5(), getMrr(),
+				_latencies.percentile(0.5) / 1e6, _latencies.percentile(0.99) / 1e6, _latencies.percentile(0.999) / 1e6,
+				getInTime());
+	}
+}
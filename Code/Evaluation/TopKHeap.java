@@ -0,0 +1,88 @@
+package data.evaluation;
+
+/**
+ * Bounded min-heap that keeps the k highest scoring int items offered to it.
+ */
+public final class TopKHeap {
+
+	private final int _k;
+	private final int[] _items;
+	private final double[] _scores;
+	private int _size;
+
+	public TopKHeap(int k) {
+		_k = k;
+		_items = new int[k];
+		_scores = new double[k];
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public void clear() {
+		_size = 0;
+	}
+
+	/**
+	 * Returns whether an item with the given score would currently be kept.
+	 */
+	public boolean accepts(double score) {
+		return _size < _k || score > _scores[0];
+	}
+
+	public void offer(int item, double score) {
+		if (_size < _k) {
+			int i = _size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (_scores[parent] <= score) {
+					break;
+				}
+				_items[i] = _items[parent];
+				_scores[i] = _scores[parent];
+				i = parent;
+			}
+			_items[i] = item;
+			_scores[i] = score;
+		} else if (_k > 0 && score > _scores[0]) {
+			siftDown(item, score);
+		}
+	}
+
+	/**
+	 * Removes all items and returns them, highest score first.
+	 */
+	public int[] drain() {
+		int[] sorted = new int[_size];
+		while (_size > 0) {
+			sorted[_size - 1] = _items[0];
+			_size--;
+			if (_size > 0) {
+				siftDown(_items[_size], _scores[_size]);
+			}
+		}
+		return sorted;
+	}
+
+	private void siftDown(int item, double score) {
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= _size) {
+				break;
+			}
+			if (child + 1 < _size && _scores[child + 1] < _scores[child]) {
+				child++;
+			}
+			if (score <= _scores[child]) {
+				break;
+			}
+			_items[i] = _items[child];
+			_scores[i] = _scores[child];
+			i = child;
+		}
+		_items[i] = item;
+		_scores[i] = score;
+	}
+}
@@ -0,0 +1,155 @@
+package data.loader.events;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A benchmarked completion event, as described by the "data" file in its completion directory. The tokens of the
+ * completed file are stored under the "Content" directory next to it, see {@link #getContentFile()}.
+ */
+public class CompletionEvent {
+
+	private final String _developer;
+	private final String _eventId;
+	private final Path _directory;
+	private final String _file;
+	private final int _completionIndex;
+	private final String _prefix;
+	private final String _category;
+	private final String _resolution;
+	private final String _completion;
+	private final String _qualifiedCompletion;
+	private final long _duration;
+	private final List<Selection> _selections;
+	private final List<String> _options;
+
+	public CompletionEvent(String developer, String eventId, Path directory, String file, int completionIndex,
+			String prefix, String category, String resolution, String completion, String qualifiedCompletion,
+			long duration, List<Selection> selections, List<String> options) {
+		_developer = developer;
+		_eventId = eventId;
+		_directory = directory;
+		_file = file;
+		_completionIndex = completionIndex;
+		_prefix = prefix;
+		_category = category;
+		_resolution = resolution;
+		_completion = completion;
+		_qualifiedCompletion = qualifiedCompletion;
+		_duration = duration;
+		_selections = Collections.unmodifiableList(selections);
+		_options = Collections.unmodifiableList(options);
+	}
+
+	public String getDeveloper() {
+		return _developer;
+	}
+
+	/**
+	 * The index of the event in the developer's event stream, as named by its directory.
+	 */
+	public String getEventId() {
+		return _eventId;
+	}
+
+	public Path getDirectory() {
+		return _directory;
+	}
+
+	/**
+	 * The file (under "Content") in which the completion took place.
+	 */
+	public String getFile() {
+		return _file;
+	}
+
+	public Path getContentFile() {
+		Path content = _directory.resolve("Content");
+		Path file = content.resolve(_file);
+		return file.toFile().exists() ? file : content.resolve(_file.replace('\\', '/'));
+	}
+
+	/**
+	 * The 0-based index of the completed token in the content file.
+	 */
+	public int getCompletionIndex() {
+		return _completionIndex;
+	}
+
+	/**
+	 * The text typed to narrow down the completion (not case-sensitive), empty if none.
+	 */
+	public String getPrefix() {
+		return _prefix;
+	}
+
+	public String getCategory() {
+		return _category;
+	}
+
+	public String getResolution() {
+		return _resolution;
+	}
+
+	/**
+	 * The simple name of the applied completion.
+	 */
+	public String getCompletion() {
+		return _completion;
+	}
+
+	/**
+	 * The fully qualified version of the applied completion, including type information.
+	 */
+	public String getQualifiedCompletion() {
+		return _qualifiedCompletion;
+	}
+
+	/**
+	 * The duration of the completion in milliseconds.
+	 */
+	public long getDuration() {
+		return _duration;
+	}
+
+	public List<Selection> getSelections() {
+		return _selections;
+	}
+
+	/**
+	 * The completion options presented to the developer, in the order in which they were presented.
+	 */
+	public List<String> getOptions() {
+		return _options;
+	}
+
+	@Override
+	public String toString() {
+		return _developer + "/" + _eventId;
+	}
+
+	/**
+	 * An option selected in the completion list before the completion was applied.
+	 */
+	public static class Selection {
+		private final long _time;
+		private final String _option;
+
+		public Selection(long time, String option) {
+			_time = time;
+			_option = option;
+		}
+
+		/**
+		 * Milliseconds since the previous selection, or since the start of the completion.
+		 */
+		public long getTime() {
+			return _time;
+		}
+
+		public String getOption() {
+			return _option;
+		}
+	}
+}
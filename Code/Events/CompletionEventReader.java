@@ -0,0 +1,169 @@
+package data.loader.events;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the completion events of the plain-text benchmark data. The data is grouped by developer, with one directory
+ * per developer below the root and one completion directory per event below that, named by the index of the event
+ * in the developer's event stream. Each completion directory holds a "data" file with the meta-data of the event.
+ */
+public class CompletionEventReader {
+
+	public static final String DATA_FILE = "data";
+
+	private CompletionEventReader() {
+	}
+
+	/**
+	 * Returns the developer directories below the root, sorted by name.
+	 */
+	public static List<Path> developers(Path root) throws IOException {
+		try (Stream<Path> dirs = Files.list(root)) {
+			return dirs.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Reads all events of one developer, in the order of their event stream. Only the directories directly below the
+	 * developer directory that hold a "data" file are events, so files named "data" in their content are not.
+	 */
+	public static List<CompletionEvent> readDeveloper(Path developerDir) throws IOException {
+		String developer = developerDir.getFileName().toString();
+		List<Path> directories;
+		try (Stream<Path> dirs = Files.list(developerDir)) {
+			directories = dirs.filter(p -> Files.isRegularFile(p.resolve(DATA_FILE))).collect(Collectors.toList());
+		}
+		List<CompletionEvent> events = new ArrayList<>(directories.size());
+		for (Path directory : directories) {
+			events.add(read(developer, directory.getFileName().toString(), directory));
+		}
+		events.sort(Comparator.comparingLong((CompletionEvent e) -> streamIndex(e.getEventId()))
+				.thenComparing(CompletionEvent::getEventId));
+		return events;
+	}
+
+	/**
+	 * Reads the "data" file of one completion directory.
+	 */
+	public static CompletionEvent read(String developer, String eventId, Path directory) throws IOException {
+		Path dataFile = directory.resolve(DATA_FILE);
+		try (BufferedReader in = Files.newBufferedReader(dataFile, StandardCharsets.UTF_8)) {
+			return parse(developer, eventId, directory, in);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("malformed completion data in " + dataFile + ": " + e.getMessage(), e);
+		}
+	}
+
+	static CompletionEvent parse(String developer, String eventId, Path directory, BufferedReader in)
+			throws IOException {
+		String file = line(in, "file");
+		int completionIndex = Integer.parseInt(line(in, "completion index").trim());
+		String prefix = line(in, "prefix").trim();
+		String category = line(in, "category").trim();
+		String resolution = line(in, "resolution").trim();
+		String[] completion = line(in, "completion").split("\t", 2);
+		long duration = millis(line(in, "duration"));
+
+		int selectionCount = Integer.parseInt(line(in, "number of selections").trim());
+		List<CompletionEvent.Selection> selections = new ArrayList<>(selectionCount);
+		for (int i = 0; i < selectionCount; i++) {
+			String selection = line(in, "selection");
+			int split = selection.indexOf('\t');
+			if (split < 0) {
+				split = selection.indexOf(' ');
+			}
+			if (split < 0) {
+				throw new IllegalArgumentException("selection without time: " + selection);
+			}
+			selections.add(new CompletionEvent.Selection(millis(selection.substring(0, split)),
+					selection.substring(split + 1)));
+		}
+
+		int optionCount = Integer.parseInt(line(in, "number of options").trim());
+		List<String> options = new ArrayList<>(optionCount);
+		for (int i = 0; i < optionCount; i++) {
+			options.add(line(in, "option"));
+		}
+
+		return new CompletionEvent(developer, eventId, directory, file, completionIndex, prefix, category,
+				resolution, completion[0].trim(), completion.length > 1 ? completion[1].trim() : "", duration,
+				selections, options);
+	}
+
+	/**
+	 * Reads the tab-separated tokens of the file in which the completion took place.
+	 */
+	public static List<String> readTokens(CompletionEvent event) throws IOException {
+		return readTokens(event, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Reads the first tokens of the file in which the completion took place, stopping after maxTokens.
+	 */
+	public static List<String> readTokens(CompletionEvent event, int maxTokens) throws IOException {
+		return readTokens(event.getContentFile(), maxTokens);
+	}
+
+	/**
+	 * Reads the first tokens of a file of tab-separated tokens, stopping after maxTokens.
+	 */
+	public static List<String> readTokens(Path file, int maxTokens) throws IOException {
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return readTokens(in, maxTokens);
+		}
+	}
+
+	/**
+	 * Reads the first tokens of tab-separated tokens, stopping after maxTokens. The reader is not closed.
+	 */
+	public static List<String> readTokens(BufferedReader in, int maxTokens) throws IOException {
+		List<String> tokens = new ArrayList<>();
+		StringBuilder token = new StringBuilder();
+		int c;
+		while (tokens.size() < maxTokens && (c = in.read()) >= 0) {
+			if (c == '\t' || c == '\n' || c == '\r') {
+				if (token.length() > 0) {
+					tokens.add(token.toString());
+					token.setLength(0);
+				}
+			} else {
+				token.append((char) c);
+			}
+		}
+		if (token.length() > 0 && tokens.size() < maxTokens) {
+			tokens.add(token.toString());
+		}
+		return tokens;
+	}
+
+	private static String line(BufferedReader in, String field) throws IOException {
+		String line = in.readLine();
+		if (line == null) {
+			throw new IllegalArgumentException("missing " + field);
+		}
+		return line;
+	}
+
+	private static long millis(String value) {
+		String trimmed = value.trim();
+		return trimmed.indexOf('.') < 0 ? Long.parseLong(trimmed) : Math.round(Double.parseDouble(trimmed));
+	}
+
+	private static long streamIndex(String eventId) {
+		String name = eventId.substring(Math.max(eventId.lastIndexOf('/'), eventId.lastIndexOf('\\')) + 1);
+		try {
+			return Long.parseLong(name);
+		} catch (NumberFormatException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+}
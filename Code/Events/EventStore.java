@@ -0,0 +1,237 @@
+package data.loader.events;
+
+import static data.loader.events.EventStoreWriter.CATEGORY;
+import static data.loader.events.EventStoreWriter.COMPLETION;
+import static data.loader.events.EventStoreWriter.DEVELOPER;
+import static data.loader.events.EventStoreWriter.EVENT_ID;
+import static data.loader.events.EventStoreWriter.FILE;
+import static data.loader.events.EventStoreWriter.PREFIX;
+import static data.loader.events.EventStoreWriter.QUALIFIED_COMPLETION;
+import static data.loader.events.EventStoreWriter.RESOLUTION;
+import static data.loader.events.EventStoreWriter.STRING_COLUMNS;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory-mapped view of the completion event meta-data written by {@link EventStoreWriter}. Events are addressed by
+ * their index in the store. Scans over a column read the mapped file directly: string fields can be compared by their
+ * ID in the string pool (see {@link #stringId(String)}) without decoding them.
+ * <p>
+ * The store is read-only and can be used from several threads.
+ */
+public class EventStore {
+
+	private final int _size;
+	private final LongBuffer _duration;
+	private final LongBuffer _selectionTimes;
+	private final IntBuffer[] _stringColumns = new IntBuffer[STRING_COLUMNS];
+	private final IntBuffer _completionIndex;
+	private final IntBuffer _selectionOffsets;
+	private final IntBuffer _selectionOptions;
+	private final IntBuffer _optionOffsets;
+	private final IntBuffer _options;
+	private final IntBuffer _stringOffsets;
+	private final ByteBuffer _stringBytes;
+	private final String[] _strings;
+	private Map<String, Integer> _stringIds;
+
+	private EventStore(ByteBuffer file) throws IOException {
+		file.order(ByteOrder.LITTLE_ENDIAN);
+		if (file.getInt(0) != EventStoreWriter.MAGIC) {
+			throw new IOException("not an event store");
+		}
+		if (file.getInt(4) != EventStoreWriter.VERSION) {
+			throw new IOException("unsupported event store version " + file.getInt(4));
+		}
+		_size = file.getInt(8);
+		int selections = file.getInt(12);
+		int options = file.getInt(16);
+		int strings = file.getInt(20);
+		int stringBytes = file.getInt(24);
+
+		int position = EventStoreWriter.HEADER_SIZE;
+		_duration = slice(file, position, _size * 8).asLongBuffer();
+		position += _size * 8;
+		_selectionTimes = slice(file, position, selections * 8).asLongBuffer();
+		position += selections * 8;
+		for (int i = 0; i < STRING_COLUMNS; i++) {
+			_stringColumns[i] = slice(file, position, _size * 4).asIntBuffer();
+			position += _size * 4;
+		}
+		_completionIndex = slice(file, position, _size * 4).asIntBuffer();
+		position += _size * 4;
+		_selectionOffsets = slice(file, position, (_size + 1) * 4).asIntBuffer();
+		position += (_size + 1) * 4;
+		_selectionOptions = slice(file, position, selections * 4).asIntBuffer();
+		position += selections * 4;
+		_optionOffsets = slice(file, position, (_size + 1) * 4).asIntBuffer();
+		position += (_size + 1) * 4;
+		_options = slice(file, position, options * 4).asIntBuffer();
+		position += options * 4;
+		_stringOffsets = slice(file, position, (strings + 1) * 4).asIntBuffer();
+		position += (strings + 1) * 4;
+		_stringBytes = slice(file, position, stringBytes);
+		_strings = new String[strings];
+	}
+
+	/**
+	 * Maps a store file into memory.
+	 */
+	public static EventStore open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new EventStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	private static ByteBuffer slice(ByteBuffer file, int position, int length) throws IOException {
+		if (position + length > file.capacity()) {
+			throw new IOException("truncated event store");
+		}
+		ByteBuffer slice = file.duplicate();
+		slice.position(position).limit(position + length);
+		return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * The number of events in the store.
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * The number of distinct strings in the string pool.
+	 */
+	public int stringCount() {
+		return _strings.length;
+	}
+
+	/**
+	 * Returns the string with the given ID in the string pool.
+	 */
+	public String string(int id) {
+		String s = _strings[id];
+		if (s == null) {
+			int start = _stringOffsets.get(id);
+			byte[] bytes = new byte[_stringOffsets.get(id + 1) - start];
+			ByteBuffer source = _stringBytes.duplicate();
+			source.position(start);
+			source.get(bytes);
+			// racy, but every thread decodes the same string
+			s = _strings[id] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return s;
+	}
+
+	/**
+	 * Returns the ID of the string in the string pool, or -1 if no event has it in any field.
+	 */
+	public synchronized int stringId(String s) {
+		if (_stringIds == null) {
+			_stringIds = new HashMap<>(2 * _strings.length);
+			for (int id = 0; id < _strings.length; id++) {
+				_stringIds.put(string(id), id);
+			}
+		}
+		Integer id = _stringIds.get(s);
+		return id != null ? id : -1;
+	}
+
+	public String getDeveloper(int event) {
+		return string(_stringColumns[DEVELOPER].get(event));
+	}
+
+	public String getEventId(int event) {
+		return string(_stringColumns[EVENT_ID].get(event));
+	}
+
+	public String getFile(int event) {
+		return string(_stringColumns[FILE].get(event));
+	}
+
+	public int getCompletionIndex(int event) {
+		return _completionIndex.get(event);
+	}
+
+	public String getPrefix(int event) {
+		return string(_stringColumns[PREFIX].get(event));
+	}
+
+	public String getCategory(int event) {
+		return string(getCategoryId(event));
+	}
+
+	/**
+	 * The string pool ID of the category of the event.
+	 */
+	public int getCategoryId(int event) {
+		return _stringColumns[CATEGORY].get(event);
+	}
+
+	public String getResolution(int event) {
+		return string(_stringColumns[RESOLUTION].get(event));
+	}
+
+	public String getCompletion(int event) {
+		return string(_stringColumns[COMPLETION].get(event));
+	}
+
+	public String getQualifiedCompletion(int event) {
+		return string(_stringColumns[QUALIFIED_COMPLETION].get(event));
+	}
+
+	public long getDuration(int event) {
+		return _duration.get(event);
+	}
+
+	public int getSelectionCount(int event) {
+		return _selectionOffsets.get(event + 1) - _selectionOffsets.get(event);
+	}
+
+	public long getSelectionTime(int event, int selection) {
+		return _selectionTimes.get(_selectionOffsets.get(event) + selection);
+	}
+
+	public String getSelection(int event, int selection) {
+		return string(_selectionOptions.get(_selectionOffsets.get(event) + selection));
+	}
+
+	public int getOptionCount(int event) {
+		return _optionOffsets.get(event + 1) - _optionOffsets.get(event);
+	}
+
+	public String getOption(int event, int option) {
+		return string(_options.get(_optionOffsets.get(event) + option));
+	}
+
+	/**
+	 * Reconstructs an event, with its completion directory resolved against the root of the benchmark data.
+	 */
+	public CompletionEvent getEvent(int event, Path root) {
+		String developer = getDeveloper(event);
+		String eventId = getEventId(event);
+		List<CompletionEvent.Selection> selections = new ArrayList<>(getSelectionCount(event));
+		for (int i = 0; i < getSelectionCount(event); i++) {
+			selections.add(new CompletionEvent.Selection(getSelectionTime(event, i), getSelection(event, i)));
+		}
+		List<String> options = new ArrayList<>(getOptionCount(event));
+		for (int i = 0; i < getOptionCount(event); i++) {
+			options.add(getOption(event, i));
+		}
+		return new CompletionEvent(developer, eventId, root.resolve(developer).resolve(eventId), getFile(event),
+				getCompletionIndex(event), getPrefix(event), getCategory(event), getResolution(event),
+				getCompletion(event), getQualifiedCompletion(event), getDuration(event), selections, options);
+	}
+}
@@ -0,0 +1,193 @@
+package data.loader.events;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs the meta-data of completion events into a single columnar file, to be memory-mapped by {@link EventStore}.
+ * Every field of the events is stored as a fixed-width column with one entry per event; strings are stored as IDs
+ * into a shared, deduplicated string pool, and the selections and options of each event as ranges of columns of their
+ * own.
+ */
+public class EventStoreWriter {
+
+	static final int MAGIC = 0x43455653;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+
+	/** The string columns with one entry per event, in file order. */
+	static final int DEVELOPER = 0, EVENT_ID = 1, FILE = 2, PREFIX = 3, CATEGORY = 4, RESOLUTION = 5,
+			COMPLETION = 6, QUALIFIED_COMPLETION = 7, STRING_COLUMNS = 8;
+
+	private final Map<String, Integer> _stringIds = new HashMap<>();
+	private final List<String> _strings = new ArrayList<>();
+
+	private final IntColumn[] _stringColumns = new IntColumn[STRING_COLUMNS];
+	private final IntColumn _completionIndex = new IntColumn();
+	private final LongColumn _duration = new LongColumn();
+	private final IntColumn _selectionOffsets = new IntColumn();
+	private final LongColumn _selectionTimes = new LongColumn();
+	private final IntColumn _selectionOptions = new IntColumn();
+	private final IntColumn _optionOffsets = new IntColumn();
+	private final IntColumn _options = new IntColumn();
+
+	public EventStoreWriter() {
+		for (int i = 0; i < STRING_COLUMNS; i++) {
+			_stringColumns[i] = new IntColumn();
+		}
+		_selectionOffsets.add(0);
+		_optionOffsets.add(0);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: EventStoreWriter <completions dir> <store file>");
+			System.exit(1);
+		}
+		EventStoreWriter writer = new EventStoreWriter();
+		for (Path developer : CompletionEventReader.developers(Paths.get(args[0]))) {
+			for (CompletionEvent event : CompletionEventReader.readDeveloper(developer)) {
+				writer.add(event);
+			}
+		}
+		writer.write(Paths.get(args[1]));
+		System.out.println(writer.size() + " events stored");
+	}
+
+	public int size() {
+		return _completionIndex.size();
+	}
+
+	public void add(CompletionEvent event) {
+		addString(DEVELOPER, event.getDeveloper());
+		addString(EVENT_ID, event.getEventId());
+		addString(FILE, event.getFile());
+		addString(PREFIX, event.getPrefix());
+		addString(CATEGORY, event.getCategory());
+		addString(RESOLUTION, event.getResolution());
+		addString(COMPLETION, event.getCompletion());
+		addString(QUALIFIED_COMPLETION, event.getQualifiedCompletion());
+		_completionIndex.add(event.getCompletionIndex());
+		_duration.add(event.getDuration());
+		for (CompletionEvent.Selection selection : event.getSelections()) {
+			_selectionTimes.add(selection.getTime());
+			_selectionOptions.add(stringId(selection.getOption()));
+		}
+		_selectionOffsets.add(_selectionOptions.size());
+		for (String option : event.getOptions()) {
+			_options.add(stringId(option));
+		}
+		_optionOffsets.add(_options.size());
+	}
+
+	/**
+	 * Writes the events added so far.
+	 */
+	public void write(Path file) throws IOException {
+		List<byte[]> encoded = new ArrayList<>(_strings.size());
+		IntColumn stringOffsets = new IntColumn();
+		stringOffsets.add(0);
+		int stringBytes = 0;
+		for (String s : _strings) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			encoded.add(bytes);
+			stringBytes += bytes.length;
+			stringOffsets.add(stringBytes);
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(size()).putInt(_selectionOptions.size())
+					.putInt(_options.size()).putInt(_strings.size()).putInt(stringBytes);
+			header.clear();
+			writeFully(channel, header);
+			// 8-byte columns first, so that all columns are aligned to their width
+			_duration.write(channel);
+			_selectionTimes.write(channel);
+			for (IntColumn column : _stringColumns) {
+				column.write(channel);
+			}
+			_completionIndex.write(channel);
+			_selectionOffsets.write(channel);
+			_selectionOptions.write(channel);
+			_optionOffsets.write(channel);
+			_options.write(channel);
+			stringOffsets.write(channel);
+			for (byte[] bytes : encoded) {
+				writeFully(channel, ByteBuffer.wrap(bytes));
+			}
+		}
+	}
+
+	private void addString(int column, String value) {
+		_stringColumns[column].add(stringId(value));
+	}
+
+	private int stringId(String value) {
+		Integer id = _stringIds.get(value);
+		if (id == null) {
+			id = _strings.size();
+			_stringIds.put(value, id);
+			_strings.add(value);
+		}
+		return id;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static class IntColumn {
+		private int[] _values = new int[1024];
+		private int _size;
+
+		void add(int value) {
+			if (_size == _values.length) {
+				_values = Arrays.copyOf(_values, _size * 2);
+			}
+			_values[_size++] = value;
+		}
+
+		int size() {
+			return _size;
+		}
+
+		void write(FileChannel channel) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(_size * 4).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.asIntBuffer().put(_values, 0, _size);
+			writeFully(channel, buffer);
+		}
+	}
+
+	private static class LongColumn {
+		private long[] _values = new long[1024];
+		private int _size;
+
+		void add(long value) {
+			if (_size == _values.length) {
+				_values = Arrays.copyOf(_values, _size * 2);
+			}
+			_values[_size++] = value;
+		}
+
+		void write(FileChannel channel) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(_size * 8).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.asLongBuffer().put(_values, 0, _size);
+			writeFully(channel, buffer);
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package data.models.bmn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import cc.kave.commons.model.naming.codeelements.IMethodName;
+import data.evaluation.TopKHeap;
+import data.loader.sst.ObjectUsage;
+
+/**
+ * Best-matching-neighbor index over object usages, with one table per receiver type. Every usage is a binary vector:
+ * its context features are hashed into {@link #CONTEXT_BITS} bits, followed by one bit per method of the type that
+ * is called on it. Identical usages are stored once, with a count.
+ * <p>
+ * A query finds the usages of the same type at the smallest Hamming distance, computed by popcount over the packed
+ * bit vectors; methods the query does not call yet do not count towards the distance. The methods called in these
+ * nearest neighbors but not in the query are predicted, by the fraction of neighbors that call them.
+ * <p>
+ * Usages can be added from several threads; queries see the usages added before them.
+ */
+public class BMNIndex {
+
+	public static final int CONTEXT_BITS = 128;
+
+	private final Map<String, TypeIndex> _types = new ConcurrentHashMap<>();
+
+	public void add(ObjectUsage usage) {
+		_types.computeIfAbsent(usage.getType().getIdentifier(), t -> new TypeIndex()).add(usage);
+	}
+
+	public int getTypeCount() {
+		return _types.size();
+	}
+
+	/**
+	 * The number of distinct usages, of all types.
+	 */
+	public long getUsageCount() {
+		long count = 0;
+		for (TypeIndex type : _types.values()) {
+			count += type.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the names of the k methods most often called on the nearest neighbors of the query that the query does
+	 * not call yet, most frequent first.
+	 * 
+	 * @param filter
+	 *            the method names to consider, or null to consider all
+	 */
+	public List<String> predict(ObjectUsage query, int k, Predicate<String> filter) {
+		TypeIndex type = _types.get(query.getType().getIdentifier());
+		return type != null ? type.predict(query, k, filter) : new ArrayList<>();
+	}
+
+	private static int contextBit(String feature) {
+		int h = feature.hashCode() * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (CONTEXT_BITS - 1);
+	}
+
+	private static class TypeIndex {
+		// one bit per called method, after the context bits
+		private final Map<String, Integer> _callBits = new HashMap<>();
+		private final List<String> _callNames = new ArrayList<>();
+		private final Map<Bits, int[]> _usages = new HashMap<>();
+		private Packed _packed;
+
+		synchronized int size() {
+			return _usages.size();
+		}
+
+		synchronized void add(ObjectUsage usage) {
+			List<Integer> bits = new ArrayList<>();
+			for (String feature : usage.getFeatures()) {
+				bits.add(contextBit(feature));
+			}
+			for (IMethodName call : usage.getCalls()) {
+				Integer bit = _callBits.get(call.getIdentifier());
+				if (bit == null) {
+					bit = CONTEXT_BITS + _callNames.size();
+					_callBits.put(call.getIdentifier(), bit);
+					_callNames.add(call.getName());
+				}
+				bits.add(bit);
+			}
+			int[] count = _usages.computeIfAbsent(new Bits(bits), b -> new int[1]);
+			count[0]++;
+			_packed = null;
+		}
+
+		/**
+		 * Returns the usages packed for queries, packing them if usages were added since.
+		 */
+		synchronized Packed packed() {
+			if (_packed == null) {
+				_packed = new Packed(new HashMap<>(_callBits), _callNames.toArray(new String[0]), _usages);
+			}
+			return _packed;
+		}
+
+		List<String> predict(ObjectUsage query, int k, Predicate<String> filter) {
+			return packed().predict(query, k, filter);
+		}
+	}
+
+	/**
+	 * An immutable snapshot of the usages of a type, packed with a fixed number of longs per usage.
+	 */
+	private static class Packed {
+		private final Map<String, Integer> _callBits;
+		private final String[] _callNames;
+		private final int _words;
+		private final long[] _usages;
+		private final int[] _counts;
+
+		Packed(Map<String, Integer> callBits, String[] callNames, Map<Bits, int[]> usages) {
+			_callBits = callBits;
+			_callNames = callNames;
+			_words = (CONTEXT_BITS + callNames.length + 63) / 64;
+			_usages = new long[usages.size() * _words];
+			_counts = new int[usages.size()];
+			int usage = 0;
+			for (Map.Entry<Bits, int[]> entry : usages.entrySet()) {
+				for (int bit : entry.getKey()._bits) {
+					_usages[usage * _words + (bit >>> 6)] |= 1L << bit;
+				}
+				_counts[usage++] = entry.getValue()[0];
+			}
+		}
+
+		List<String> predict(ObjectUsage query, int k, Predicate<String> filter) {
+			long[] bits = new long[_words];
+			long[] mask = new long[_words];
+			Arrays.fill(mask, 0, CONTEXT_BITS / 64, -1L);
+			for (String feature : query.getFeatures()) {
+				int bit = contextBit(feature);
+				bits[bit >>> 6] |= 1L << bit;
+			}
+			for (IMethodName call : query.getCalls()) {
+				Integer bit = _callBits.get(call.getIdentifier());
+				if (bit != null) {
+					bits[bit >>> 6] |= 1L << bit;
+					mask[bit >>> 6] |= 1L << bit;
+				}
+			}
+
+			// nearest neighbors: all usages at the smallest distance
+			int[] neighbors = new int[16];
+			int neighborCount = 0;
+			int best = Integer.MAX_VALUE;
+			for (int usage = 0, offset = 0; usage < _counts.length; usage++, offset += _words) {
+				int distance = 0;
+				for (int w = 0; w < _words && distance <= best; w++) {
+					distance += Long.bitCount((_usages[offset + w] ^ bits[w]) & mask[w]);
+				}
+				if (distance < best) {
+					best = distance;
+					neighborCount = 0;
+				}
+				if (distance == best) {
+					if (neighborCount == neighbors.length) {
+						neighbors = Arrays.copyOf(neighbors, neighborCount * 2);
+					}
+					neighbors[neighborCount++] = usage;
+				}
+			}
+
+			// votes for the methods the query does not call yet, summed per name over overloads
+			Map<String, Integer> candidateIds = new HashMap<>();
+			List<String> candidates = new ArrayList<>();
+			double[] votes = new double[_callNames.length];
+			double total = 0;
+			for (int n = 0; n < neighborCount; n++) {
+				int usage = neighbors[n];
+				total += _counts[usage];
+				for (int w = CONTEXT_BITS / 64; w < _words; w++) {
+					long calls = _usages[usage * _words + w] & ~bits[w];
+					while (calls != 0) {
+						int bit = w * 64 + Long.numberOfTrailingZeros(calls);
+						calls &= calls - 1;
+						String name = _callNames[bit - CONTEXT_BITS];
+						Integer candidate = candidateIds.get(name);
+						if (candidate == null) {
+							if (filter != null && !filter.test(name)) {
+								continue;
+							}
+							candidate = candidates.size();
+							candidateIds.put(name, candidate);
+							candidates.add(name);
+						}
+						votes[candidate] += _counts[usage];
+					}
+				}
+			}
+			TopKHeap top = new TopKHeap(k);
+			for (int candidate = 0; candidate < candidates.size(); candidate++) {
+				top.offer(candidate, votes[candidate] / total);
+			}
+			List<String> predictions = new ArrayList<>();
+			for (int candidate : top.drain()) {
+				predictions.add(candidates.get(candidate));
+			}
+			return predictions;
+		}
+	}
+
+	/**
+	 * The set bits of a usage, as a sorted array of distinct bit indices.
+	 */
+	private static class Bits {
+		private final int[] _bits;
+		private final int _hash;
+
+		Bits(List<Integer> bits) {
+			_bits = bits.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+			_hash = Arrays.hashCode(_bits);
+		}
+
+		@Override
+		public int hashCode() {
+			return _hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Bits && Arrays.equals(_bits, ((Bits) obj)._bits);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package data.models.bmn;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import cc.kave.commons.model.events.completionevents.Context;
+import cc.kave.commons.utils.io.ReadingArchive;
+import data.evaluation.CompletionBenchmark;
+import data.evaluation.CompletionPredictor;
+import data.evaluation.CompletionQuery;
+import data.loader.events.CompletionEvent;
+import data.loader.sst.LazySSTReader;
+import data.loader.sst.ObjectUsage;
+import data.loader.sst.UsageFeatureExtractor;
+
+/**
+ * Predicts completions with a {@link BMNIndex}. The query usage is extracted from the SST of the event, which is read
+ * from "&lt;developer&gt;/&lt;event&gt;.json", or from the only ".json" file in the directory
+ * "&lt;developer&gt;/&lt;event&gt;", below the root of the SST completion data. Predictions are restricted to names
+ * that start with the query's prefix, ignoring case. Events without a completion on an object of a known type get no
+ * predictions. Only the members around the completion are deserialized, see {@link LazySSTReader}. The SST is read
+ * when the query is prepared, so the benchmark times the prediction from the SST only.
+ */
+public class BMNPredictor implements CompletionPredictor {
+
+	private final BMNIndex _index;
+	private final Path _sstRoot;
+	private final UsageFeatureExtractor _extractor = new UsageFeatureExtractor();
+
+	public BMNPredictor(BMNIndex index, Path sstRoot) {
+		_index = index;
+		_sstRoot = sstRoot;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("usage: BMNPredictor <context archives dir> <SST completions dir> <completions dir> "
+					+ "[threads] [k]");
+			System.exit(1);
+		}
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		int limit = args.length > 4 ? Integer.parseInt(args[4]) : CompletionBenchmark.DEFAULT_LIMIT;
+		BMNIndex index = new BMNIndex();
+		long start = System.nanoTime();
+		train(Paths.get(args[0]), index);
+		System.err.printf("indexed %d distinct usages of %d types in %.1f s%n", index.getUsageCount(),
+				index.getTypeCount(), (System.nanoTime() - start) / 1e9);
+
+		Path sstRoot = Paths.get(args[1]);
+		CompletionBenchmark benchmark = new CompletionBenchmark(Paths.get(args[2]),
+				() -> new BMNPredictor(index, sstRoot), limit);
+		benchmark.report(new ForkJoinPool(threads), CompletionBenchmark.DEFAULT_WARM_RUNS, System.out);
+	}
+
+	/**
+	 * Adds the usages of all SSTs in the context archives below the given directory.
+	 */
+	public static void train(Path archives, BMNIndex index) throws IOException {
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(archives)) {
+			files = paths.filter(p -> p.toString().endsWith(".zip")).sorted().collect(Collectors.toList());
+		}
+		UsageFeatureExtractor extractor = new UsageFeatureExtractor();
+		files.parallelStream().forEach(file -> {
+			ReadingArchive contexts = new ReadingArchive(file.toFile());
+			try {
+				while (contexts.hasNext()) {
+					Context context = contexts.getNext(Context.class);
+					try {
+						for (ObjectUsage usage : extractor.extract(context.getSST())) {
+							index.add(usage);
+						}
+					} catch (RuntimeException e) {
+						System.err.println("cannot extract usages from " + file + ": " + e);
+					}
+				}
+			} finally {
+				contexts.close();
+			}
+		});
+	}
+
+	/**
+	 * A query with the SST of its event.
+	 */
+	private static class SSTQuery extends CompletionQuery {
+		private final Context _sst;
+
+		SSTQuery(CompletionQuery query, Context sst) {
+			super(query.getEvent(), query.getContext(), query.getPrefix(), query.getLimit());
+			_sst = sst;
+		}
+	}
+
+	@Override
+	public CompletionQuery prepare(CompletionQuery query) throws IOException {
+		return new SSTQuery(query, readContext(query.getEvent()));
+	}
+
+	/**
+	 * Predicts from the SST read by {@link #prepare(CompletionQuery)}; a query that was not prepared reads it first.
+	 */
+	@Override
+	public List<String> predict(CompletionQuery query) {
+		Context context;
+		if (query instanceof SSTQuery) {
+			context = ((SSTQuery) query)._sst;
+		} else {
+			try {
+				context = readContext(query.getEvent());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		ObjectUsage usage = _extractor.extractQuery(context.getSST());
+		if (usage == null) {
+			return new ArrayList<>();
+		}
+		String prefix = query.getPrefix();
+		return _index.predict(usage, query.getLimit(),
+				prefix.isEmpty() ? null : name -> name.regionMatches(true, 0, prefix, 0, prefix.length()));
+	}
+
+	private Context readContext(CompletionEvent event) throws IOException {
+		Path directory = _sstRoot.resolve(event.getDeveloper()).resolve(event.getEventId());
+		Path json = directory.resolveSibling(directory.getFileName() + ".json");
+		if (!Files.isRegularFile(json)) {
+			List<Path> jsons;
+			try (Stream<Path> files = Files.list(directory)) {
+				jsons = files.filter(p -> p.toString().endsWith(".json")).collect(Collectors.toList());
+			}
+			if (jsons.size() != 1) {
+				throw new IOException("expected one SST in " + directory + ", found " + jsons.size());
+			}
+			json = jsons.get(0);
+		}
+		return LazySSTReader.readContext(new String(Files.readAllBytes(json), StandardCharsets.UTF_8));
+	}
+}
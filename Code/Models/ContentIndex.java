@@ -0,0 +1,94 @@
+package data.models.ngram;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import data.loader.events.CompletionEvent;
+
+/**
+ * The files in the "Content" directory of each completion event, with their size and modification time, keyed by
+ * developer and event. The directory of an event is listed once, when its files are first asked for, so that
+ * following the event streams again (e.g. in the warm runs of a benchmark) does not list it again. Thread-safe, and
+ * meant to be shared by the {@link NestedCache}s of all developers.
+ */
+public class ContentIndex {
+
+	/**
+	 * A file in the content of an event.
+	 */
+	public static class Entry {
+		private final Path _path;
+		private final long _size;
+		private final long _modified;
+
+		Entry(Path path, long size, long modified) {
+			_path = path;
+			_size = size;
+			_modified = modified;
+		}
+
+		public Path getPath() {
+			return _path;
+		}
+
+		public long getSize() {
+			return _size;
+		}
+
+		/**
+		 * The modification time, in milliseconds since the epoch.
+		 */
+		public long getModified() {
+			return _modified;
+		}
+	}
+
+	private final ConcurrentHashMap<String, Map<String, Entry>> _events = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the files in the content of the event, by their path relative to the "Content" directory.
+	 */
+	public Map<String, Entry> files(CompletionEvent event) throws IOException {
+		String key = event.getDeveloper() + '/' + event.getEventId();
+		Map<String, Entry> files = _events.get(key);
+		if (files == null) {
+			files = list(event.getDirectory().resolve("Content"));
+			Map<String, Entry> previous = _events.putIfAbsent(key, files);
+			if (previous != null) {
+				files = previous;
+			}
+		}
+		return files;
+	}
+
+	public int size() {
+		return _events.size();
+	}
+
+	private static Map<String, Entry> list(Path content) throws IOException {
+		Map<String, Entry> files = new HashMap<>();
+		if (!Files.isDirectory(content)) {
+			return files;
+		}
+		// the attributes come with the directory listing, so files are not opened
+		Files.walkFileTree(content, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				if (attributes.isRegularFile()) {
+					files.put(content.relativize(file).toString(),
+							new Entry(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return Collections.unmodifiableMap(files);
+	}
+}
@@ -0,0 +1,155 @@
+package data.models.ngram;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to int values with linear probing, without boxing. The key 0 is reserved
+ * to mark free slots. The map holds at most 3/4 of {@link #MAX_CAPACITY} keys; inserting more fails with an
+ * {@link IllegalStateException}.
+ */
+final class LongIntHashMap {
+
+	private static final int MIN_CAPACITY = 16;
+	/** The largest power-of-two array length. */
+	static final int MAX_CAPACITY = 1 << 30;
+
+	private long[] _keys;
+	private int[] _values;
+	private int _mask;
+	private int _size;
+
+	LongIntHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	LongIntHashMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < MAX_CAPACITY && capacity < expectedSize * 2L) {
+			capacity <<= 1;
+		}
+		_keys = new long[capacity];
+		_values = new int[capacity];
+		_mask = capacity - 1;
+	}
+
+	int size() {
+		return _size;
+	}
+
+	int capacity() {
+		return _keys.length;
+	}
+
+	int get(long key, int missing) {
+		for (int i = slot(key);; i = (i + 1) & _mask) {
+			long k = _keys[i];
+			if (k == key) {
+				return _values[i];
+			}
+			if (k == 0) {
+				return missing;
+			}
+		}
+	}
+
+	void put(long key, int value) {
+		int i = find(key);
+		if (_keys[i] == 0) {
+			insert(i, key, value);
+		} else {
+			_values[i] = value;
+		}
+	}
+
+	/**
+	 * Adds delta to the value of the key, which is 0 if the key is not mapped, and returns the new value.
+	 */
+	int addTo(long key, int delta) {
+		int i = find(key);
+		if (_keys[i] == 0) {
+			insert(i, key, delta);
+			return delta;
+		}
+		return _values[i] += delta;
+	}
+
+	/**
+	 * Removes the key and returns its value, or missing if the key is not mapped.
+	 */
+	int remove(long key, int missing) {
+		int i = find(key);
+		if (_keys[i] == 0) {
+			return missing;
+		}
+		int value = _values[i];
+		// backward-shift deletion keeps the probe sequences of the following keys intact
+		for (int j = (i + 1) & _mask;; j = (j + 1) & _mask) {
+			long k = _keys[j];
+			if (k == 0) {
+				break;
+			}
+			int home = slot(k);
+			if (((j - home) & _mask) >= ((j - i) & _mask)) {
+				_keys[i] = k;
+				_values[i] = _values[j];
+				i = j;
+			}
+		}
+		_keys[i] = 0;
+		_size--;
+		return value;
+	}
+
+	void clear() {
+		Arrays.fill(_keys, 0);
+		_size = 0;
+	}
+
+	private int find(long key) {
+		if (key == 0) {
+			throw new IllegalArgumentException("the key 0 is reserved");
+		}
+		int i = slot(key);
+		while (_keys[i] != 0 && _keys[i] != key) {
+			i = (i + 1) & _mask;
+		}
+		return i;
+	}
+
+	private void insert(int i, long key, int value) {
+		// grow before inserting, so that a full map is left unchanged; long arithmetic, as 4 * size overflows
+		if ((_size + 1L) * 4 > _keys.length * 3L) {
+			grow();
+			i = find(key);
+		}
+		_keys[i] = key;
+		_values[i] = value;
+		_size++;
+	}
+
+	private void grow() {
+		if (_keys.length >= MAX_CAPACITY) {
+			throw new IllegalStateException("hash map full: " + _size + " keys");
+		}
+		long[] keys = _keys;
+		int[] values = _values;
+		_keys = new long[keys.length * 2];
+		_values = new int[keys.length * 2];
+		_mask = _keys.length - 1;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				int j = slot(keys[i]);
+				while (_keys[j] != 0) {
+					j = (j + 1) & _mask;
+				}
+				_keys[j] = keys[i];
+				_values[j] = values[i];
+			}
+		}
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & _mask;
+	}
+}
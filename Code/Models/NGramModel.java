@@ -0,0 +1,436 @@
+package data.models.ngram;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+import data.evaluation.TopKHeap;
+
+/**
+ * An n-gram language model over token IDs (see {@link data.loader.sst.Vocabulary}) with Jelinek-Mercer smoothing:
+ * the probability of a token after a context of length n is interpolated as
+ * <code>lambda * c(context, token) / c(context) + (1 - lambda) * p(token | shorter context)</code>, down to
+ * add-one smoothed unigram probabilities. Contexts that were never seen are skipped.
+ * <p>
+ * Counts are kept in one open-addressing table per context length, keyed by a 64-bit hash of the n-gram, so n-grams
+ * are stored as a long and an int each, without boxing. Hash collisions between different n-grams of the same length
+ * are possible but negligibly rare. For top-k queries, every context keeps the list of tokens that followed it, in
+ * an arena shared by all contexts of the same length.
+ * <p>
+ * Learning and forgetting are not thread-safe, but once learned, the model can be queried from several threads.
+ */
+public class NGramModel {
+
+	public static final int DEFAULT_ORDER = 6;
+	public static final double DEFAULT_LAMBDA = 0.5;
+
+	private static final long SEED = 0x2545F4914F6CDD1DL;
+
+	private final int _order;
+	private final double _lambda;
+	// index: context length, from 1 to order - 1
+	private final Contexts[] _contexts;
+	private int[] _unigramCounts = new int[1024];
+	private int _vocabularySize;
+	private long _tokenCount;
+	private volatile int[] _unigramsByCount;
+
+	private final ThreadLocal<Query> _queries = ThreadLocal.withInitial(Query::new);
+
+	public NGramModel() {
+		this(DEFAULT_ORDER, DEFAULT_LAMBDA);
+	}
+
+	public NGramModel(int order, double lambda) {
+		if (order < 1) {
+			throw new IllegalArgumentException("order must be at least 1: " + order);
+		}
+		_order = order;
+		_lambda = lambda;
+		_contexts = new Contexts[order];
+		for (int n = 1; n < order; n++) {
+			_contexts[n] = new Contexts();
+		}
+	}
+
+	public int getOrder() {
+		return _order;
+	}
+
+	public double getLambda() {
+		return _lambda;
+	}
+
+	/**
+	 * The number of tokens learned.
+	 */
+	public long getTokenCount() {
+		return _tokenCount;
+	}
+
+	/**
+	 * The number of distinct n-grams learned, of all lengths.
+	 */
+	public long getNGramCount() {
+		long count = 0;
+		for (int id = 0; id < _vocabularySize; id++) {
+			if (_unigramCounts[id] > 0) {
+				count++;
+			}
+		}
+		for (int n = 1; n < _order; n++) {
+			count += _contexts[n]._ngrams.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Learns the token sequence of one file.
+	 */
+	public void learn(int[] tokens) {
+		learn(tokens, 0, tokens.length);
+	}
+
+	/**
+	 * Learns the tokens from (inclusive) to (exclusive), with the tokens before from as their context.
+	 */
+	public void learn(int[] tokens, int from, int to) {
+		for (int i = from; i < to; i++) {
+			int token = tokens[i];
+			if (token < 0) {
+				throw new IllegalArgumentException("negative token ID " + token + " at " + i);
+			}
+			countUnigram(token);
+			long context = SEED;
+			for (int n = 1; n < _order && i - n >= 0; n++) {
+				context = extend(context, tokens[i - n]);
+				_contexts[n].learn(context, token);
+			}
+		}
+		_tokenCount += to - from;
+		_unigramsByCount = null;
+	}
+
+	/**
+	 * Forgets tokens learned before with {@link #learn(int[], int, int)}, with the same context, so that the counts are
+	 * as if they had never been learned.
+	 */
+	public void forget(int[] tokens, int from, int to) {
+		for (int i = from; i < to; i++) {
+			int token = tokens[i];
+			if (token < 0 || token >= _vocabularySize || _unigramCounts[token] == 0) {
+				throw new IllegalArgumentException("token ID " + token + " at " + i + " was not learned");
+			}
+			_unigramCounts[token]--;
+			long context = SEED;
+			for (int n = 1; n < _order && i - n >= 0; n++) {
+				context = extend(context, tokens[i - n]);
+				_contexts[n].forget(context, token);
+			}
+		}
+		_tokenCount -= to - from;
+		_unigramsByCount = null;
+	}
+
+	/**
+	 * Returns the probability of the token after the first contextLength tokens of the context.
+	 */
+	public double probability(int[] context, int contextLength, int token) {
+		Query query = _queries.get();
+		query.prepare(context, contextLength);
+		return query.score(token);
+	}
+
+	/**
+	 * Returns the k most probable tokens after the first contextLength tokens of the context, most probable first.
+	 * Unknown tokens in the context are given as negative IDs.
+	 */
+	public int[] predict(int[] context, int contextLength, int k) {
+		return predict(context, contextLength, k, null);
+	}
+
+	/**
+	 * Returns the k most probable tokens after the context that pass the filter, most probable first.
+	 * 
+	 * @param filter
+	 *            the tokens to consider, or null to consider all
+	 */
+	public int[] predict(int[] context, int contextLength, int k, IntPredicate filter) {
+		Query query = _queries.get();
+		query.prepare(context, contextLength);
+		TopKHeap top = new TopKHeap(k);
+		// tokens seen after any of the contexts, longest context first
+		for (int n = query._length; n >= 1; n--) {
+			Contexts contexts = _contexts[n];
+			int slot = query._slots[n];
+			int[] arena = contexts._arena;
+			int offset = contexts._offsets[slot];
+			for (int i = contexts._successorCounts[slot] - 1; i >= 0; i--) {
+				int token = arena[offset + i];
+				if (query.visit(token) && (filter == null || filter.test(token))) {
+					top.offer(token, query.score(token));
+				}
+			}
+		}
+		// all other tokens score by their unigram count alone, so the k most frequent of them suffice
+		int[] unigrams = unigramsByCount();
+		int added = 0;
+		for (int i = 0; i < unigrams.length && added < k; i++) {
+			int token = unigrams[i];
+			if (query.visit(token) && (filter == null || filter.test(token))) {
+				top.offer(token, query.score(token));
+				added++;
+			}
+		}
+		return top.drain();
+	}
+
+	private void countUnigram(int token) {
+		if (token >= _unigramCounts.length) {
+			_unigramCounts = Arrays.copyOf(_unigramCounts, Math.max(token + 1, _unigramCounts.length * 2));
+		}
+		_unigramCounts[token]++;
+		if (token >= _vocabularySize) {
+			_vocabularySize = token + 1;
+		}
+	}
+
+	private int[] unigramsByCount() {
+		int[] sorted = _unigramsByCount;
+		if (sorted == null) {
+			int[] counts = _unigramCounts;
+			int distinct = 0;
+			for (int id = 0; id < _vocabularySize; id++) {
+				if (counts[id] > 0) {
+					distinct++;
+				}
+			}
+			// sort by descending count via packed longs, to avoid boxing
+			long[] packed = new long[distinct];
+			int i = 0;
+			for (int id = 0; id < _vocabularySize; id++) {
+				if (counts[id] > 0) {
+					packed[i++] = ((long) (Integer.MAX_VALUE - counts[id]) << 32) | id;
+				}
+			}
+			Arrays.sort(packed);
+			sorted = new int[distinct];
+			for (i = 0; i < distinct; i++) {
+				sorted[i] = (int) packed[i];
+			}
+			_unigramsByCount = sorted;
+		}
+		return sorted;
+	}
+
+	private static long extend(long context, int token) {
+		return mix(context * 0x9E3779B97F4A7C15L + token + 1);
+	}
+
+	private static long ngram(long context, int token) {
+		long h = mix(context ^ ((token + 1L) * 0xC2B2AE3D27D4EB4FL));
+		return h == 0 ? 1 : h;
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * The contexts of one length: their counts and successor lists, indexed by a slot per context, and the counts of
+	 * the n-grams that extend them by one token.
+	 * <p>
+	 * The successor lists share one int arena rather than being an array each, as most contexts are followed by a
+	 * single token and an array of one int would cost several times its content in object overhead. A list takes a
+	 * block of a power-of-two size in the arena and moves to a block twice as large when it fills up; blocks that are
+	 * left behind are kept in a free list per size and reused.
+	 */
+	private static class Contexts {
+		// the largest array length that all JVMs allocate
+		private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+		private final LongIntHashMap _slots = new LongIntHashMap();
+		private final LongIntHashMap _ngrams = new LongIntHashMap();
+		private int[] _counts = new int[64];
+		private int[] _offsets = new int[64];
+		private byte[] _blockSizes = new byte[64];
+		private int[] _successorCounts = new int[64];
+		private int _size;
+
+		private int[] _arena = new int[1024];
+		private int _arenaSize;
+		// index: log2 of the block size; the first int of a free block links to the next one
+		private final int[] _freeBlocks = new int[31];
+
+		Contexts() {
+			Arrays.fill(_freeBlocks, -1);
+		}
+
+		void learn(long context, int token) {
+			long key = context == 0 ? 1 : context;
+			int slot = _slots.get(key, -1);
+			if (slot < 0) {
+				slot = add(key);
+			}
+			_counts[slot]++;
+			if (_ngrams.addTo(ngram(context, token), 1) == 1) {
+				addSuccessor(slot, token);
+			}
+		}
+
+		void forget(long context, int token) {
+			int slot = slot(context);
+			long ngram = ngram(context, token);
+			if (slot < 0 || _ngrams.get(ngram, 0) == 0) {
+				throw new IllegalArgumentException("n-gram ending in token ID " + token + " was not learned");
+			}
+			_counts[slot]--;
+			if (_ngrams.addTo(ngram, -1) == 0) {
+				_ngrams.remove(ngram, 0);
+				removeSuccessor(slot, token);
+			}
+		}
+
+		int slot(long context) {
+			return _slots.get(context == 0 ? 1 : context, -1);
+		}
+
+		private int add(long key) {
+			if (_size == _counts.length) {
+				int capacity = grownLength(_size, _size + 1L);
+				_counts = Arrays.copyOf(_counts, capacity);
+				_offsets = Arrays.copyOf(_offsets, capacity);
+				_blockSizes = Arrays.copyOf(_blockSizes, capacity);
+				_successorCounts = Arrays.copyOf(_successorCounts, capacity);
+			}
+			_slots.put(key, _size);
+			_offsets[_size] = allocate(0);
+			return _size++;
+		}
+
+		private void addSuccessor(int slot, int token) {
+			int count = _successorCounts[slot];
+			int blockSize = _blockSizes[slot];
+			if (count == 1 << blockSize) {
+				int offset = allocate(blockSize + 1);
+				System.arraycopy(_arena, _offsets[slot], _arena, offset, count);
+				release(_offsets[slot], blockSize);
+				_offsets[slot] = offset;
+				_blockSizes[slot] = (byte) (blockSize + 1);
+			}
+			_arena[_offsets[slot] + count] = token;
+			_successorCounts[slot] = count + 1;
+		}
+
+		private void removeSuccessor(int slot, int token) {
+			int offset = _offsets[slot];
+			int last = _successorCounts[slot] - 1;
+			for (int i = last; i >= 0; i--) {
+				if (_arena[offset + i] == token) {
+					_arena[offset + i] = _arena[offset + last];
+					_successorCounts[slot] = last;
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Returns the offset of a free block of 2^log2Size ints in the arena.
+		 */
+		private int allocate(int log2Size) {
+			int offset = _freeBlocks[log2Size];
+			if (offset >= 0) {
+				_freeBlocks[log2Size] = _arena[offset];
+				return offset;
+			}
+			long end = (long) _arenaSize + (1 << log2Size);
+			if (end > _arena.length) {
+				_arena = Arrays.copyOf(_arena, grownLength(_arena.length, end));
+			}
+			offset = _arenaSize;
+			_arenaSize = (int) end;
+			return offset;
+		}
+
+		private void release(int offset, int log2Size) {
+			_arena[offset] = _freeBlocks[log2Size];
+			_freeBlocks[log2Size] = offset;
+		}
+
+		/**
+		 * Returns the length to grow an array to that holds at least the needed number of elements.
+		 */
+		private static int grownLength(int length, long needed) {
+			if (needed > MAX_ARRAY_LENGTH) {
+				throw new IllegalStateException("more than " + MAX_ARRAY_LENGTH + " elements needed for contexts");
+			}
+			return (int) Math.min(MAX_ARRAY_LENGTH, Math.max(needed, length * 2L));
+		}
+	}
+
+	/**
+	 * The per-thread state of a query: the slots and counts of the query's contexts, and the tokens scored so far.
+	 */
+	private class Query {
+		private final long[] _hashes = new long[_order];
+		private final int[] _slots = new int[_order];
+		private final double[] _contextCounts = new double[_order];
+		private int _length;
+		private int[] _visited = new int[0];
+		private int _stamp;
+
+		void prepare(int[] context, int contextLength) {
+			_length = 0;
+			long hash = SEED;
+			for (int n = 1; n < _order && n <= contextLength; n++) {
+				int token = context[contextLength - n];
+				if (token < 0) {
+					break;
+				}
+				hash = extend(hash, token);
+				int slot = _contexts[n].slot(hash);
+				// contexts whose tokens were all forgotten keep their slot, with a count of 0
+				if (slot < 0 || _contexts[n]._counts[slot] == 0) {
+					break;
+				}
+				_hashes[n] = hash;
+				_slots[n] = slot;
+				_contextCounts[n] = _contexts[n]._counts[slot];
+				_length = n;
+			}
+			if (_visited.length < _vocabularySize) {
+				_visited = new int[_vocabularySize];
+				_stamp = 0;
+			}
+			if (++_stamp == 0) {
+				Arrays.fill(_visited, 0);
+				_stamp = 1;
+			}
+		}
+
+		/**
+		 * Marks the token as visited by the current query, and returns whether it was not visited before.
+		 */
+		boolean visit(int token) {
+			if (_visited[token] == _stamp) {
+				return false;
+			}
+			_visited[token] = _stamp;
+			return true;
+		}
+
+		double score(int token) {
+			int count = token >= 0 && token < _vocabularySize ? _unigramCounts[token] : 0;
+			double p = (count + 1.0) / (_tokenCount + _vocabularySize + 1.0);
+			for (int n = 1; n <= _length; n++) {
+				int ngramCount = token >= 0 ? _contexts[n]._ngrams.get(ngram(_hashes[n], token), 0) : 0;
+				p = _lambda * ngramCount / _contextCounts[n] + (1 - _lambda) * p;
+			}
+			return p;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package data.models.ngram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import data.evaluation.CompletionBenchmark;
+import data.evaluation.CompletionPredictor;
+import data.evaluation.CompletionQuery;
+import data.evaluation.Scores;
+import data.loader.sst.Vocabulary;
+
+/**
+ * Predicts completions with an {@link NGramModel}, mapping the tokens of a query to IDs through the vocabulary the
+ * model was trained with. Tokens not in the vocabulary end the context. Predictions are restricted to tokens that
+ * start with the query's prefix, ignoring case.
+ */
+public class NGramPredictor implements CompletionPredictor {
+
+	private final NGramModel _model;
+	private final Vocabulary _vocabulary;
+
+	public NGramPredictor(NGramModel model, Vocabulary vocabulary) {
+		_model = model;
+		_vocabulary = vocabulary;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: NGramPredictor <training file or dir> <completions dir> [threads] [k]");
+			System.exit(1);
+		}
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int limit = args.length > 3 ? Integer.parseInt(args[3]) : CompletionBenchmark.DEFAULT_LIMIT;
+		NGramModel model = new NGramModel();
+		Vocabulary vocabulary = new Vocabulary();
+		long start = System.nanoTime();
+		train(Paths.get(args[0]), model, vocabulary);
+		System.err.printf("learned %d tokens, %d n-grams, %d token types in %.1f s%n", model.getTokenCount(),
+				model.getNGramCount(), vocabulary.size(), (System.nanoTime() - start) / 1e9);
+
+		CompletionBenchmark benchmark = new CompletionBenchmark(Paths.get(args[1]),
+				() -> new NGramPredictor(model, vocabulary), limit);
+		start = System.nanoTime();
+		Map<String, Scores> scores = benchmark.report(new ForkJoinPool(threads), CompletionBenchmark.DEFAULT_WARM_RUNS,
+				System.out);
+		System.err.printf("evaluated %d events in %.1f s%n", scores.get(CompletionBenchmark.ALL).getCount(),
+				(System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Learns the plain-text training data: a file, or all files below a directory, with one file of tab-separated
+	 * tokens per line.
+	 */
+	public static void train(Path training, NGramModel model, Vocabulary vocabulary) throws IOException {
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(training)) {
+			files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+		for (Path file : files) {
+			try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					model.learn(ids(line, vocabulary));
+				}
+			}
+		}
+	}
+
+	private static int[] ids(String line, Vocabulary vocabulary) {
+		List<String> tokens = new ArrayList<>();
+		int start = 0;
+		for (int i = 0; i <= line.length(); i++) {
+			if (i == line.length() || line.charAt(i) == '\t') {
+				if (i > start) {
+					tokens.add(line.substring(start, i));
+				}
+				start = i + 1;
+			}
+		}
+		return ids(tokens, vocabulary);
+	}
+
+	/**
+	 * Maps tokens to their IDs, adding new tokens to the vocabulary.
+	 */
+	private static int[] ids(List<String> tokens, Vocabulary vocabulary) {
+		int[] ids = new int[tokens.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = vocabulary.id(tokens.get(i));
+		}
+		return ids;
+	}
+
+	@Override
+	public List<String> predict(CompletionQuery query) {
+		List<String> context = query.getContext();
+		// only the last order - 1 tokens matter
+		int length = Math.min(context.size(), _model.getOrder() - 1);
+		int[] ids = new int[length];
+		for (int i = 0; i < length; i++) {
+			ids[i] = _vocabulary.lookup(context.get(context.size() - length + i));
+		}
+		String prefix = query.getPrefix();
+		IntPredicate filter = prefix.isEmpty() ? null
+				: id -> _vocabulary.token(id).regionMatches(true, 0, prefix, 0, prefix.length());
+		int[] predicted = _model.predict(ids, length, query.getLimit(), filter);
+		List<String> completions = new ArrayList<>(predicted.length);
+		for (int id : predicted) {
+			completions.add(_vocabulary.token(id));
+		}
+		return completions;
+	}
+}
@@ -0,0 +1,216 @@
+package data.models.ngram;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.loader.events.CompletionEvent;
+import data.loader.events.CompletionEventReader;
+
+/**
+ * A local n-gram model over the files a developer had open at the time of a completion, as reconstructed in the
+ * "Content" directory of each event. The cache follows the developer's event stream: on each event, only the files
+ * that were added, removed or changed since the previous event are tokenized, and only the token ranges in which
+ * they differ are forgotten and learned again. Every file is read and compared by its length and a content hash:
+ * each event holds its own copy of the files, so neither their size nor their modification time tells whether they
+ * changed. Of the completed file, only the tokens before the completion index are learned.
+ * <p>
+ * The cache numbers the tokens it sees densely from 0 on, whether they are part of the training vocabulary or not, so
+ * that the arrays of its model are sized by the developer's own tokens rather than by the vocabulary. The IDs are
+ * only meaningful to the cache's model; {@link #token(int)} maps them back.
+ */
+public class NestedCache {
+
+	private final String _developer;
+	private final ContentIndex _index;
+	private final NGramModel _model;
+	private final Map<String, Integer> _ids = new HashMap<>();
+	private final List<String> _tokens = new ArrayList<>();
+	private Map<String, File> _files = new HashMap<>();
+	private String _eventId;
+	private long _tokensRelearned;
+	private long _filesRead;
+
+	/**
+	 * The state of a file as of the last event.
+	 */
+	private static class File {
+		private final long _size;
+		private final long _hash;
+		private final int _maxTokens;
+		private final int[] _tokens;
+
+		File(long size, long hash, int maxTokens, int[] tokens) {
+			_size = size;
+			_hash = hash;
+			_maxTokens = maxTokens;
+			_tokens = tokens;
+		}
+	}
+
+	public NestedCache(String developer) {
+		this(developer, new ContentIndex(), new NGramModel());
+	}
+
+	/**
+	 * @param index
+	 *            the listings of the content directories, which may be shared with other caches
+	 */
+	public NestedCache(String developer, ContentIndex index, NGramModel model) {
+		_developer = developer;
+		_index = index;
+		_model = model;
+	}
+
+	public String getDeveloper() {
+		return _developer;
+	}
+
+	/**
+	 * The last event the cache was updated to, or null.
+	 */
+	public String getEventId() {
+		return _eventId;
+	}
+
+	public NGramModel getModel() {
+		return _model;
+	}
+
+	/**
+	 * The number of tokens learned or forgotten by updates so far.
+	 */
+	public long getTokensRelearned() {
+		return _tokensRelearned;
+	}
+
+	/**
+	 * The number of files read by updates so far.
+	 */
+	public long getFilesRead() {
+		return _filesRead;
+	}
+
+	/**
+	 * Returns the ID of a token in the cache's model, or -1 if the cache has not seen it.
+	 */
+	public int lookup(String token) {
+		Integer id = _ids.get(token);
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * Returns the token of an ID returned by {@link #lookup(String)}.
+	 */
+	public String token(int id) {
+		return _tokens.get(id);
+	}
+
+	/**
+	 * The number of distinct tokens the cache has seen, which bounds its IDs.
+	 */
+	public int size() {
+		return _tokens.size();
+	}
+
+	/**
+	 * Brings the cache to the content of the given event of the same developer.
+	 */
+	public void update(CompletionEvent event) throws IOException {
+		if (!_developer.equals(event.getDeveloper())) {
+			throw new IllegalArgumentException("cache of " + _developer + " cannot follow " + event);
+		}
+		if (event.getEventId().equals(_eventId)) {
+			return;
+		}
+		String completed = event.getDirectory().resolve("Content").relativize(event.getContentFile()).toString();
+		Map<String, File> current = new HashMap<>();
+		for (Map.Entry<String, ContentIndex.Entry> entry : _index.files(event).entrySet()) {
+			String name = entry.getKey();
+			ContentIndex.Entry file = entry.getValue();
+			int maxTokens = name.equals(completed) ? event.getCompletionIndex() : Integer.MAX_VALUE;
+			File previous = _files.remove(name);
+			byte[] content = Files.readAllBytes(file.getPath());
+			_filesRead++;
+			long hash = hash(content);
+			int[] tokens;
+			if (previous != null && previous._maxTokens == maxTokens && previous._size == content.length
+					&& previous._hash == hash) {
+				tokens = previous._tokens;
+			} else {
+				try (BufferedReader in = new BufferedReader(
+						new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
+					tokens = ids(CompletionEventReader.readTokens(in, maxTokens));
+				}
+				update(previous != null ? previous._tokens : null, tokens);
+			}
+			current.put(name, new File(content.length, hash, maxTokens, tokens));
+		}
+		// files no longer in the content
+		for (File file : _files.values()) {
+			update(file._tokens, new int[0]);
+		}
+		_files = current;
+		_eventId = event.getEventId();
+	}
+
+	private int[] ids(List<String> tokens) {
+		int[] ids = new int[tokens.size()];
+		for (int i = 0; i < ids.length; i++) {
+			String token = tokens.get(i);
+			Integer id = _ids.get(token);
+			if (id == null) {
+				id = _tokens.size();
+				_tokens.add(token);
+				_ids.put(token, id);
+			}
+			ids[i] = id;
+		}
+		return ids;
+	}
+
+	private static long hash(byte[] content) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : content) {
+			hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Replaces the n-grams of the old tokens of a file with those of the new ones. Only the n-grams that overlap the
+	 * range between the common prefix and the common suffix of both differ.
+	 */
+	private void update(int[] previous, int[] tokens) {
+		if (previous == null) {
+			previous = new int[0];
+		}
+		int common = Math.min(previous.length, tokens.length);
+		int prefix = 0;
+		while (prefix < common && previous[prefix] == tokens[prefix]) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < common - prefix
+				&& previous[previous.length - 1 - suffix] == tokens[tokens.length - 1 - suffix]) {
+			suffix++;
+		}
+		// n-grams that end in the suffix still differ while their context reaches into the changed range
+		int reach = _model.getOrder() - 1;
+		int previousEnd = Math.min(previous.length, previous.length - suffix + reach);
+		int end = Math.min(tokens.length, tokens.length - suffix + reach);
+		if (prefix == previous.length && prefix == tokens.length) {
+			return;
+		}
+		_model.forget(previous, prefix, previousEnd);
+		_model.learn(tokens, prefix, end);
+		_tokensRelearned += previousEnd - prefix + end - prefix;
+	}
+}
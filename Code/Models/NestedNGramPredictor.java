@@ -0,0 +1,127 @@
+package data.models.ngram;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+
+import data.evaluation.CompletionBenchmark;
+import data.evaluation.CompletionPredictor;
+import data.evaluation.CompletionQuery;
+import data.evaluation.TopKHeap;
+import data.loader.sst.Vocabulary;
+
+/**
+ * Predicts completions with a global n-gram model interpolated with a {@link NestedCache} of the developer's
+ * current files. The benchmark creates one predictor per developer and queries it in the order of the event stream,
+ * so the cache is updated incrementally from one event to the next.
+ */
+public class NestedNGramPredictor implements CompletionPredictor {
+
+	public static final double DEFAULT_CACHE_WEIGHT = 0.5;
+
+	private final NGramModel _global;
+	private final Vocabulary _vocabulary;
+	private final double _cacheWeight;
+	private final ContentIndex _index;
+	private NestedCache _cache;
+
+	public NestedNGramPredictor(NGramModel global, Vocabulary vocabulary) {
+		this(global, vocabulary, DEFAULT_CACHE_WEIGHT, new ContentIndex());
+	}
+
+	/**
+	 * @param cacheWeight
+	 *            the weight of the cache's probability, between 0 and 1
+	 * @param index
+	 *            the listings of the content directories, shared by the predictors of all developers and runs
+	 */
+	public NestedNGramPredictor(NGramModel global, Vocabulary vocabulary, double cacheWeight, ContentIndex index) {
+		_global = global;
+		_vocabulary = vocabulary;
+		_cacheWeight = cacheWeight;
+		_index = index;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: NestedNGramPredictor <training file or dir> <completions dir> [threads] [k]");
+			System.exit(1);
+		}
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int limit = args.length > 3 ? Integer.parseInt(args[3]) : CompletionBenchmark.DEFAULT_LIMIT;
+		NGramModel model = new NGramModel();
+		Vocabulary vocabulary = new Vocabulary();
+		NGramPredictor.train(Paths.get(args[0]), model, vocabulary);
+
+		ContentIndex index = new ContentIndex();
+		CompletionBenchmark benchmark = new CompletionBenchmark(Paths.get(args[1]),
+				() -> new NestedNGramPredictor(model, vocabulary, DEFAULT_CACHE_WEIGHT, index), limit);
+		benchmark.report(new ForkJoinPool(threads), CompletionBenchmark.DEFAULT_WARM_RUNS, System.out);
+	}
+
+	public NestedCache getCache() {
+		return _cache;
+	}
+
+	@Override
+	public List<String> predict(CompletionQuery query) {
+		if (_cache == null) {
+			_cache = new NestedCache(query.getEvent().getDeveloper(), _index, new NGramModel());
+		}
+		try {
+			_cache.update(query.getEvent());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		NestedCache cache = _cache;
+		NGramModel local = cache.getModel();
+
+		// the context in the IDs of either model; the cache also knows tokens that are not in the vocabulary
+		List<String> context = query.getContext();
+		int length = Math.min(context.size(), _global.getOrder() - 1);
+		int[] localIds = new int[length];
+		int[] globalIds = new int[length];
+		for (int i = 0; i < length; i++) {
+			String token = context.get(context.size() - length + i);
+			localIds[i] = cache.lookup(token);
+			globalIds[i] = _vocabulary.lookup(token);
+		}
+		String prefix = query.getPrefix();
+		IntPredicate localFilter = prefix.isEmpty() ? null
+				: id -> cache.token(id).regionMatches(true, 0, prefix, 0, prefix.length());
+		IntPredicate globalFilter = prefix.isEmpty() ? null
+				: id -> _vocabulary.token(id).regionMatches(true, 0, prefix, 0, prefix.length());
+
+		// the top-k of either model are the candidates of the interpolation; a candidate is ranked by its cache ID,
+		// or by the complement of its vocabulary ID if the cache has not seen it
+		int k = query.getLimit();
+		TopKHeap top = new TopKHeap(k);
+		LongIntHashMap scored = new LongIntHashMap(2 * k);
+		for (int id : local.predict(localIds, length, k, localFilter)) {
+			offer(top, scored, id, localIds, globalIds, length, id, _vocabulary.lookup(cache.token(id)));
+		}
+		for (int id : _global.predict(globalIds, length, k, globalFilter)) {
+			int localId = cache.lookup(_vocabulary.token(id));
+			offer(top, scored, localId >= 0 ? localId : ~id, localIds, globalIds, length, localId, id);
+		}
+		int[] predicted = top.drain();
+		List<String> completions = new ArrayList<>(predicted.length);
+		for (int item : predicted) {
+			completions.add(item >= 0 ? cache.token(item) : _vocabulary.token(~item));
+		}
+		return completions;
+	}
+
+	private void offer(TopKHeap top, LongIntHashMap scored, int item, int[] localIds, int[] globalIds, int length,
+			int localId, int globalId) {
+		// the key 0 is reserved by the map
+		if (scored.addTo(item >= 0 ? item + 1L : item, 1) == 1) {
+			top.offer(item, _cacheWeight * _cache.getModel().probability(localIds, length, localId)
+					+ (1 - _cacheWeight) * _global.probability(globalIds, length, globalId));
+		}
+	}
+}
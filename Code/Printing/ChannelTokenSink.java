@@ -0,0 +1,62 @@
+package data.loader.sst;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link TokenSink} that encodes the printed characters as UTF-8 into a direct {@link ByteBuffer} and drains that
+ * buffer into a {@link WritableByteChannel} whenever it fills up.
+ */
+public class ChannelTokenSink implements TokenSink {
+
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final WritableByteChannel _channel;
+	private final ByteBuffer _buffer;
+	private final CharsetEncoder _encoder;
+
+	public ChannelTokenSink(WritableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	public ChannelTokenSink(WritableByteChannel channel, int bufferSize) {
+		_channel = channel;
+		_buffer = ByteBuffer.allocateDirect(bufferSize);
+		_encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		CharBuffer in = CharBuffer.wrap(chars, offset, length);
+		while (true) {
+			CoderResult result = _encoder.encode(in, _buffer, false);
+			if (result.isOverflow()) {
+				drain();
+			} else if (result.isUnderflow()) {
+				return;
+			} else {
+				result.throwException();
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		drain();
+	}
+
+	private void drain() throws IOException {
+		_buffer.flip();
+		while (_buffer.hasRemaining()) {
+			_channel.write(_buffer);
+		}
+		_buffer.clear();
+	}
+}
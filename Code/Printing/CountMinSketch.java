@@ -0,0 +1,88 @@
+package data.loader.sst;
+
+/**
+ * Count-min sketch over 64-bit token hashes (see {@link TokenCounter#hash(CharSequence)}): a fixed-size table of
+ * depth rows of width counters, each row indexed by a different hash function. The estimate of a count is never below
+ * the true count, and exceeds it by at most a small fraction of the total count with high probability.
+ * <p>
+ * Sketches are not thread-safe, but sketches of the same dimensions can be merged by adding them, so each thread can
+ * count into its own sketch.
+ */
+public class CountMinSketch {
+
+	public static final int DEFAULT_DEPTH = 4;
+	public static final int DEFAULT_WIDTH = 1 << 20;
+
+	private final int _depth;
+	private final int _mask;
+	private final int[] _counts;
+
+	public CountMinSketch() {
+		this(DEFAULT_DEPTH, DEFAULT_WIDTH);
+	}
+
+	/**
+	 * @param width
+	 *            the number of counters per row, a power of two
+	 */
+	public CountMinSketch(int depth, int width) {
+		if (depth < 1 || width < 1 || Integer.bitCount(width) != 1) {
+			throw new IllegalArgumentException("invalid dimensions " + depth + "x" + width);
+		}
+		_depth = depth;
+		_mask = width - 1;
+		_counts = new int[depth * width];
+	}
+
+	public int getDepth() {
+		return _depth;
+	}
+
+	public int getWidth() {
+		return _mask + 1;
+	}
+
+	public void add(long hash) {
+		add(hash, 1);
+	}
+
+	public void add(long hash, int count) {
+		for (int row = 0; row < _depth; row++) {
+			int i = index(row, hash);
+			int sum = _counts[i] + count;
+			// saturate rather than overflow
+			_counts[i] = sum < 0 ? Integer.MAX_VALUE : sum;
+		}
+	}
+
+	/**
+	 * Returns an upper bound of the count of the given hash.
+	 */
+	public int estimate(long hash) {
+		int estimate = Integer.MAX_VALUE;
+		for (int row = 0; row < _depth; row++) {
+			estimate = Math.min(estimate, _counts[index(row, hash)]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Adds the counts of another sketch of the same dimensions.
+	 */
+	public void add(CountMinSketch other) {
+		if (other._depth != _depth || other._mask != _mask) {
+			throw new IllegalArgumentException("sketch dimensions differ");
+		}
+		for (int i = 0; i < _counts.length; i++) {
+			int sum = _counts[i] + other._counts[i];
+			_counts[i] = sum < 0 ? Integer.MAX_VALUE : sum;
+		}
+	}
+
+	private int index(int row, long hash) {
+		// double hashing: row i uses h1 + i * h2
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+		return row * (_mask + 1) + ((h1 + row * h2) & _mask);
+	}
+}
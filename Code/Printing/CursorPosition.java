@@ -0,0 +1,65 @@
+package data.loader.sst;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Location of the cursor marker in the output of an {@link SSTPrintingContextExtended}: the 0-based index of the
+ * token that contains the cursor (or of the token that would follow it), and the character offset of the cursor.
+ * Tokens are counted the way {@link TokenizingSink} splits them.
+ */
+public class CursorPosition {
+
+	private final int _tokenIndex;
+	private final long _charOffset;
+
+	public CursorPosition(int tokenIndex, long charOffset) {
+		_tokenIndex = tokenIndex;
+		_charOffset = charOffset;
+	}
+
+	public int getTokenIndex() {
+		return _tokenIndex;
+	}
+
+	public long getCharOffset() {
+		return _charOffset;
+	}
+
+	/**
+	 * Writes the position as a sidecar line: token index and character offset, separated by a tab.
+	 */
+	public void write(Writer writer) throws IOException {
+		writer.write(Integer.toString(_tokenIndex));
+		writer.write('\t');
+		writer.write(Long.toString(_charOffset));
+		writer.write('\n');
+	}
+
+	/**
+	 * Parses a sidecar line written by {@link #write(Writer)}.
+	 */
+	public static CursorPosition parse(String line) {
+		int tab = line.indexOf('\t');
+		return new CursorPosition(Integer.parseInt(line.substring(0, tab)), Long.parseLong(line.substring(tab + 1).trim()));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof CursorPosition)) {
+			return false;
+		}
+		CursorPosition other = (CursorPosition) obj;
+		return _tokenIndex == other._tokenIndex && _charOffset == other._charOffset;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * _tokenIndex + Long.hashCode(_charOffset);
+	}
+
+	@Override
+	public String toString() {
+		return "CursorPosition(" + _tokenIndex + ", " + _charOffset + ")";
+	}
+}
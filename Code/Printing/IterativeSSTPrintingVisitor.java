@@ -0,0 +1,313 @@
+package data.loader.sst;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import cc.kave.commons.model.ssts.IStatement;
+import cc.kave.commons.model.ssts.blocks.CatchBlockKind;
+import cc.kave.commons.model.ssts.blocks.ICaseBlock;
+import cc.kave.commons.model.ssts.blocks.ICatchBlock;
+import cc.kave.commons.model.ssts.blocks.IDoLoop;
+import cc.kave.commons.model.ssts.blocks.IForEachLoop;
+import cc.kave.commons.model.ssts.blocks.IForLoop;
+import cc.kave.commons.model.ssts.blocks.IIfElseBlock;
+import cc.kave.commons.model.ssts.blocks.ILockBlock;
+import cc.kave.commons.model.ssts.blocks.ISwitchBlock;
+import cc.kave.commons.model.ssts.blocks.ITryBlock;
+import cc.kave.commons.model.ssts.blocks.IUncheckedBlock;
+import cc.kave.commons.model.ssts.blocks.IUsingBlock;
+import cc.kave.commons.model.ssts.blocks.IWhileLoop;
+import cc.kave.commons.model.ssts.statements.ILabelledStatement;
+
+/**
+ * {@link SSTPrintingVisitorExtended} that prints nested statements from an explicit stack of continuation frames
+ * instead of recursing into every block, so the Java stack depth no longer grows with the nesting depth of the code.
+ * The output is identical to that of the recursive visitor.
+ * <p>
+ * Each block and each compound statement (loops, conditionals, try, switch, ...) is a frame. A compound statement is
+ * a plan of printing actions, which mirror the corresponding visit methods, interleaved with its blocks; when the
+ * plan reaches a block, the block is pushed and the plan continues once the block is done. Simple statements and
+ * expressions are still visited directly, as they are shallow in SSTs. Only lambdas and loop headers, which are
+ * expressions with a body, start a nested traversal, so the stack depth grows with their nesting only.
+ */
+public class IterativeSSTPrintingVisitor extends SSTPrintingVisitorExtended {
+
+	private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+
+	public IterativeSSTPrintingVisitor() {
+		super();
+	}
+
+	public IterativeSSTPrintingVisitor(TokenClassifier classifier) {
+		super(classifier);
+	}
+
+	@Override
+	protected void appendBody(SSTPrintingContextExtended context, List<IStatement> body) {
+		int base = stack.size();
+		stack.push(new BlockFrame(body, true));
+		try {
+			while (stack.size() > base) {
+				// a frame that pushes another one is never done in the same step
+				if (!stack.peek().step(context)) {
+					stack.pop();
+				}
+			}
+		} finally {
+			while (stack.size() > base) {
+				stack.pop();
+			}
+		}
+	}
+
+	private abstract static class Frame {
+		/**
+		 * Prints up to the next nested frame, which is pushed, or to the end of the frame. Returns false once the
+		 * frame is done.
+		 */
+		abstract boolean step(SSTPrintingContextExtended context);
+	}
+
+	/**
+	 * A statement block, printed like {@link SSTPrintingContextExtended#statementBlock}.
+	 */
+	private class BlockFrame extends Frame {
+		private final List<IStatement> block;
+		private final boolean withBrackets;
+		private Iterator<IStatement> statements;
+
+		BlockFrame(List<IStatement> block, boolean withBrackets) {
+			this.block = block;
+			this.withBrackets = withBrackets;
+		}
+
+		@Override
+		boolean step(SSTPrintingContextExtended context) {
+			if (statements == null) {
+				if (block.isEmpty()) {
+					if (withBrackets) {
+						context.text("\t{\t}");
+					}
+					return false;
+				}
+				if (withBrackets) {
+					context.newLine().indentation().text("{");
+				}
+				context.indentationLevel++;
+				statements = block.iterator();
+			}
+			if (statements.hasNext() && !context.isWindowExhausted()) {
+				context.newLine();
+				IStatement statement = statements.next();
+				Frame frame = frame(statement);
+				if (frame != null) {
+					stack.push(frame);
+				} else {
+					statement.accept(IterativeSSTPrintingVisitor.this, context);
+				}
+				return true;
+			}
+			context.indentationLevel--;
+			if (withBrackets) {
+				context.newLine().indentation().text("}");
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A compound statement: printing actions and nested frames, in order.
+	 */
+	private class Plan extends Frame {
+		private final List<Object> items = new ArrayList<>(4);
+		private int next;
+
+		Plan then(Consumer<SSTPrintingContextExtended> action) {
+			items.add(action);
+			return this;
+		}
+
+		Plan block(List<IStatement> block, boolean withBrackets) {
+			items.add(new BlockFrame(block, withBrackets));
+			return this;
+		}
+
+		Plan statement(IStatement statement) {
+			Frame frame = frame(statement);
+			items.add(frame != null ? frame
+					: (Consumer<SSTPrintingContextExtended>) c -> statement.accept(IterativeSSTPrintingVisitor.this, c));
+			return this;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		boolean step(SSTPrintingContextExtended context) {
+			while (next < items.size()) {
+				Object item = items.get(next++);
+				if (item instanceof Frame) {
+					stack.push((Frame) item);
+					return true;
+				}
+				((Consumer<SSTPrintingContextExtended>) item).accept(context);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the frame of a compound statement, or null for a simple statement.
+	 */
+	private Frame frame(IStatement statement) {
+		if (statement instanceof IIfElseBlock) {
+			return ifElse((IIfElseBlock) statement);
+		} else if (statement instanceof IForLoop) {
+			return forLoop((IForLoop) statement);
+		} else if (statement instanceof IForEachLoop) {
+			return forEachLoop((IForEachLoop) statement);
+		} else if (statement instanceof IWhileLoop) {
+			return whileLoop((IWhileLoop) statement);
+		} else if (statement instanceof IDoLoop) {
+			return doLoop((IDoLoop) statement);
+		} else if (statement instanceof ITryBlock) {
+			return tryBlock((ITryBlock) statement);
+		} else if (statement instanceof ISwitchBlock) {
+			return switchBlock((ISwitchBlock) statement);
+		} else if (statement instanceof IUsingBlock) {
+			return usingBlock((IUsingBlock) statement);
+		} else if (statement instanceof ILockBlock) {
+			return lockBlock((ILockBlock) statement);
+		} else if (statement instanceof IUncheckedBlock) {
+			return new Plan().then(c -> c.indentation().keyword("unchecked"))
+					.block(((IUncheckedBlock) statement).getBody(), true);
+		} else if (statement instanceof ILabelledStatement) {
+			ILabelledStatement labelled = (ILabelledStatement) statement;
+			return new Plan().then(c -> c.indentation().keyword(labelled.getLabel()).text(":").newLine())
+					.statement(labelled.getStatement());
+		}
+		return null;
+	}
+
+	private Frame doLoop(IDoLoop block) {
+		return new Plan().then(c -> c.indentation().keyword("do")).block(block.getBody(), true).then(c -> {
+			c.newLine().indentation().keyword("while").space().text("(");
+			c.indentationLevel++;
+			block.getCondition().accept(this, c);
+			c.indentationLevel--;
+			c.newLine().indentation().text(")");
+		});
+	}
+
+	private Frame forEachLoop(IForEachLoop block) {
+		return new Plan().then(c -> {
+			c.indentation().keyword("foreach").space().text("(").type(block.getDeclaration().getType()).space();
+			block.getDeclaration().getReference().accept(this, c);
+			c.space().keyword("in").space();
+			block.getLoopedReference().accept(this, c);
+			c.text(")");
+		}).block(block.getBody(), true);
+	}
+
+	private Frame forLoop(IForLoop block) {
+		return new Plan().then(c -> {
+			c.indentation().keyword("for").space().text("(");
+			c.indentationLevel++;
+		}).block(block.getInit(), true).then(c -> {
+			c.text(";");
+			block.getCondition().accept(this, c);
+			c.text(";");
+		}).block(block.getStep(), true).then(c -> {
+			c.indentationLevel--;
+			c.newLine().indentation().text(")");
+		}).block(block.getBody(), true);
+	}
+
+	private Frame ifElse(IIfElseBlock block) {
+		Plan plan = new Plan().then(c -> {
+			c.indentation().keyword("if").space().text("(");
+			block.getCondition().accept(this, c);
+			c.text(")");
+		}).block(block.getThen(), true);
+		if (!block.getElse().isEmpty()) {
+			plan.then(c -> c.newLine().indentation().keyword("else")).block(block.getElse(), true);
+		}
+		return plan;
+	}
+
+	private Frame lockBlock(ILockBlock stmt) {
+		return new Plan().then(c -> {
+			c.indentation().keyword("lock").space().text("(");
+			stmt.getReference().accept(this, c);
+			c.text(")");
+		}).block(stmt.getBody(), true);
+	}
+
+	private Frame switchBlock(ISwitchBlock block) {
+		Plan plan = new Plan().then(c -> {
+			c.indentation().keyword("switch").space().text("(");
+			block.getReference().accept(this, c);
+			c.text(")").newLine().indentation();
+			c.indentationLevel++;
+			c.text("{");
+		});
+		for (ICaseBlock section : block.getSections()) {
+			plan.then(c -> {
+				c.newLine().indentation().keyword("case").space();
+				section.getLabel().accept(this, c);
+				c.text(":");
+			}).block(section.getBody(), false);
+		}
+		if (!block.getDefaultSection().isEmpty()) {
+			plan.then(c -> c.newLine().indentation().keyword("default").text(":")).block(block.getDefaultSection(),
+					false);
+		}
+		return plan.then(c -> {
+			c.newLine();
+			c.indentationLevel--;
+			c.indentation().text("}");
+		});
+	}
+
+	private Frame tryBlock(ITryBlock block) {
+		Plan plan = new Plan().then(c -> c.indentation().keyword("try")).block(block.getBody(), true);
+		for (ICatchBlock catchBlock : block.getCatchBlocks()) {
+			plan.then(c -> {
+				c.newLine().indentation().keyword("catch");
+
+				if (catchBlock.getKind() != CatchBlockKind.General) {
+					c.space().text("(").type(catchBlock.getParameter().getValueType());
+
+					if (catchBlock.getKind() != CatchBlockKind.Unnamed) {
+						c.space().text(catchBlock.getParameter().getName());
+					}
+
+					c.text(")");
+				}
+			}).block(catchBlock.getBody(), true);
+		}
+		if (!block.getFinally().isEmpty()) {
+			plan.then(c -> c.newLine().indentation().keyword("finally")).block(block.getFinally(), true);
+		}
+		return plan;
+	}
+
+	private Frame usingBlock(IUsingBlock block) {
+		return new Plan().then(c -> {
+			c.indentation().keyword("using").space().text("(");
+			block.getReference().accept(this, c);
+			c.text(")");
+		}).block(block.getBody(), true);
+	}
+
+	private Frame whileLoop(IWhileLoop block) {
+		return new Plan().then(c -> {
+			c.indentation().keyword("while").space().text("(");
+			c.indentationLevel++;
+			block.getCondition().accept(this, c);
+			c.indentationLevel--;
+			c.newLine().indentation().text(")");
+		}).block(block.getBody(), true);
+	}
+}
@@ -0,0 +1,419 @@
+package data.loader.sst;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import cc.kave.commons.model.events.completionevents.Context;
+import cc.kave.commons.model.ssts.ISST;
+import cc.kave.commons.model.ssts.declarations.IDelegateDeclaration;
+import cc.kave.commons.model.ssts.declarations.IEventDeclaration;
+import cc.kave.commons.model.ssts.declarations.IFieldDeclaration;
+import cc.kave.commons.model.ssts.declarations.IMethodDeclaration;
+import cc.kave.commons.model.ssts.declarations.IPropertyDeclaration;
+import cc.kave.commons.utils.io.json.JsonSerialization;
+
+/**
+ * Reads serialized SSTs of completion events, deserializing only the member declarations that contain the completion
+ * (a "CompletionExpression" node). The JSON of the other members is only scanned for its extent; they are added to the
+ * SST as lazy proxies that are deserialized on the first call of one of their methods, e.g. when the printing visitor
+ * visits them. Load time and heap use thus follow the size of the members around the completion rather than the size
+ * of the file. Each lazy member keeps a copy of its own JSON text until it is deserialized, so the text of the file is
+ * not retained by the SST.
+ * <p>
+ * A lazy member equals another lazy member of the same kind whose JSON text has the same 128-bit digest (see
+ * {@link MemberOutputCache}), and its hash code is taken from that digest, so neither deserializes it.
+ * <p>
+ * The name of a lazy member is answered without deserializing the member, from the "Name" value of its JSON alone, so
+ * that {@link SSTPrintingVisitorExtended} can order the members of a group by name (see
+ * {@link #hashCodeOfDeclaration(Object)} for ties) and prints an SST read lazily exactly like one deserialized as a
+ * whole, even though the hash sets of the SST iterate lazy members in a different order.
+ */
+public class LazySSTReader {
+
+	static final String COMPLETION_MARKER = "CompletionExpression";
+
+	private static final String[] GROUPS = { "Delegates", "Events", "Fields", "Properties", "Methods" };
+
+	/**
+	 * Reads a serialized completion context, or a serialized SST without its context, like
+	 * {@link SSTCorpusConverter#readContext(String)}.
+	 */
+	public static Context readContext(String json) {
+		Split split = split(json);
+		Context context = SSTCorpusConverter.readContext(split._json);
+		ISST sst = context.getSST();
+		for (Span span : split._lazy) {
+			switch (span._group) {
+			case 0:
+				add(sst.getDelegates(), IDelegateDeclaration.class, json, span);
+				break;
+			case 1:
+				add(sst.getEvents(), IEventDeclaration.class, json, span);
+				break;
+			case 2:
+				add(sst.getFields(), IFieldDeclaration.class, json, span);
+				break;
+			case 3:
+				add(sst.getProperties(), IPropertyDeclaration.class, json, span);
+				break;
+			default:
+				add(sst.getMethods(), IMethodDeclaration.class, json, span);
+				break;
+			}
+		}
+		return context;
+	}
+
+	/**
+	 * Whether the given node has been deserialized: false only for lazy members that have not been used yet. Lazy
+	 * members never contain the completion.
+	 */
+	public static boolean isLoaded(Object node) {
+		if (!Proxy.isProxyClass(node.getClass())) {
+			return true;
+		}
+		InvocationHandler handler = Proxy.getInvocationHandler(node);
+		return !(handler instanceof LazyMember) || ((LazyMember) handler).isLoaded();
+	}
+
+	/**
+	 * Returns the digest of the JSON text of a lazy member, see {@link MemberOutputCache#key}, or null if the node is
+	 * not a lazy member. The digest is computed when the SST is read, and the member is not deserialized.
+	 */
+	static long[] digest(Object node) {
+		if (!Proxy.isProxyClass(node.getClass())) {
+			return null;
+		}
+		InvocationHandler handler = Proxy.getInvocationHandler(node);
+		return handler instanceof LazyMember ? ((LazyMember) handler).digest() : null;
+	}
+
+	/**
+	 * Returns the hash code of the deserialized declaration, for lazy members as well as for others, so that members
+	 * with equal names are ordered the same way in both. Deserializes a lazy member.
+	 */
+	static int hashCodeOfDeclaration(Object node) {
+		if (Proxy.isProxyClass(node.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(node);
+			if (handler instanceof LazyMember) {
+				return ((LazyMember) handler).node().hashCode();
+			}
+		}
+		return node.hashCode();
+	}
+
+	private static <T> void add(Set<T> members, Class<T> type, String json, Span span) {
+		members.add(type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				new LazyMember(type, json, span._start, span._end))));
+	}
+
+	private static class LazyMember implements InvocationHandler {
+		private final Class<?> _type;
+		private final int _length;
+		private final long[] _digest;
+		// the JSON of this member only, dropped once it is deserialized
+		private String _json;
+		private volatile Object _node;
+		private Object _name;
+
+		LazyMember(Class<?> type, String json, int start, int end) {
+			_type = type;
+			_length = end - start;
+			_digest = MemberOutputCache.digest(json, start, end);
+			_json = json.substring(start, end);
+		}
+
+		boolean isLoaded() {
+			return _node != null;
+		}
+
+		long[] digest() {
+			return _digest;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				switch (method.getName()) {
+				case "hashCode":
+					return (int) _digest[0];
+				case "equals":
+					return sameJson(args[0]);
+				case "toString":
+					return "lazy " + _type.getSimpleName() + " (" + _length + " chars)";
+				default:
+					break;
+				}
+			}
+			if (method.getName().equals("getName") && method.getParameterCount() == 0) {
+				Object name = name(method.getReturnType());
+				if (name != null) {
+					return name;
+				}
+			}
+			try {
+				return method.invoke(node(), args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		/**
+		 * Returns the name of the member, deserialized from the "Name" value of its JSON only, or null if it has been
+		 * deserialized as a whole or its JSON has no name.
+		 */
+		private synchronized Object name(Class<?> type) {
+			if (_name == null && _json != null) {
+				for (int[] member : members(_json, skipWhitespace(_json, 0))) {
+					if (isKey(_json, member, "Name")) {
+						_name = JsonSerialization.fromJson(_json.substring(member[2], member[3]), type);
+						break;
+					}
+				}
+			}
+			return _node != null ? null : _name;
+		}
+
+		private boolean sameJson(Object other) {
+			if (other == null || !Proxy.isProxyClass(other.getClass())) {
+				return false;
+			}
+			InvocationHandler handler = Proxy.getInvocationHandler(other);
+			if (handler == this) {
+				return true;
+			}
+			if (!(handler instanceof LazyMember)) {
+				return false;
+			}
+			LazyMember member = (LazyMember) handler;
+			return member._type == _type && member._length == _length && member._digest[0] == _digest[0]
+					&& member._digest[1] == _digest[1];
+		}
+
+		private Object node() {
+			Object node = _node;
+			if (node == null) {
+				synchronized (this) {
+					node = _node;
+					if (node == null) {
+						node = JsonSerialization.fromJson(_json, _type);
+						_node = node;
+						_json = null;
+					}
+				}
+			}
+			return node;
+		}
+	}
+
+	/**
+	 * The JSON of a member declaration in the given group.
+	 */
+	static class Span {
+		final int _group;
+		final int _start;
+		final int _end;
+
+		Span(int group, int start, int end) {
+			_group = group;
+			_start = start;
+			_end = end;
+		}
+	}
+
+	/**
+	 * A serialized SST without its lazy members, and the JSON of those members in the original text.
+	 */
+	static class Split {
+		final String _json;
+		final List<Span> _lazy;
+
+		Split(String json, List<Span> lazy) {
+			_json = json;
+			_lazy = lazy;
+		}
+	}
+
+	/**
+	 * Removes the member declarations that do not contain the completion from the member arrays of the SST.
+	 */
+	static Split split(String json) {
+		List<Span> lazy = new ArrayList<>();
+		int root = skipWhitespace(json, 0);
+		if (root >= json.length() || json.charAt(root) != '{') {
+			return new Split(json, lazy);
+		}
+		int sst = root;
+		for (int[] member : members(json, root)) {
+			if (isKey(json, member, "SST") && json.charAt(member[2]) == '{') {
+				sst = member[2];
+			}
+		}
+		int[] markers = markers(json);
+		StringBuilder reduced = new StringBuilder(json.length());
+		int copied = 0;
+		for (int[] member : members(json, sst)) {
+			int group = group(json, member);
+			if (group < 0 || json.charAt(member[2]) != '[') {
+				continue;
+			}
+			StringBuilder kept = new StringBuilder().append('[');
+			boolean changed = false;
+			for (int[] element : elements(json, member[2])) {
+				if (json.charAt(element[0]) == '{' && !contains(markers, element[0], element[1])) {
+					lazy.add(new Span(group, element[0], element[1]));
+					changed = true;
+				} else {
+					if (kept.length() > 1) {
+						kept.append(',');
+					}
+					kept.append(json, element[0], element[1]);
+				}
+			}
+			if (changed) {
+				reduced.append(json, copied, member[2]).append(kept).append(']');
+				copied = member[3];
+			}
+		}
+		if (copied == 0) {
+			return new Split(json, lazy);
+		}
+		reduced.append(json, copied, json.length());
+		return new Split(reduced.toString(), lazy);
+	}
+
+	private static int group(String json, int[] member) {
+		for (int i = 0; i < GROUPS.length; i++) {
+			if (isKey(json, member, GROUPS[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isKey(String json, int[] member, String key) {
+		// member[0] and member[1] delimit the key without its quotes
+		return member[1] - member[0] == key.length() && json.regionMatches(member[0], key, 0, key.length());
+	}
+
+	/**
+	 * Returns the positions of all completion markers in ascending order.
+	 */
+	private static int[] markers(String json) {
+		int[] markers = new int[4];
+		int count = 0;
+		int i = json.indexOf(COMPLETION_MARKER);
+		while (i >= 0) {
+			if (count == markers.length) {
+				markers = Arrays.copyOf(markers, count * 2);
+			}
+			markers[count++] = i;
+			i = json.indexOf(COMPLETION_MARKER, i + COMPLETION_MARKER.length());
+		}
+		return Arrays.copyOf(markers, count);
+	}
+
+	private static boolean contains(int[] markers, int start, int end) {
+		int i = Arrays.binarySearch(markers, start);
+		if (i < 0) {
+			i = -i - 1;
+		}
+		return i < markers.length && markers[i] < end;
+	}
+
+	/**
+	 * Returns the key start, key end, value start and value end of every member of the object at the given position.
+	 */
+	private static List<int[]> members(String json, int object) {
+		List<int[]> members = new ArrayList<>();
+		int i = skipWhitespace(json, object + 1);
+		while (i < json.length() && json.charAt(i) == '"') {
+			int keyEnd = skipString(json, i);
+			int value = skipWhitespace(json, skipWhitespace(json, keyEnd) + 1);
+			int valueEnd = skipValue(json, value);
+			members.add(new int[] { i + 1, keyEnd - 1, value, valueEnd });
+			i = skipWhitespace(json, valueEnd);
+			if (i < json.length() && json.charAt(i) == ',') {
+				i = skipWhitespace(json, i + 1);
+			}
+		}
+		return members;
+	}
+
+	/**
+	 * Returns the start and end of every element of the array at the given position.
+	 */
+	private static List<int[]> elements(String json, int array) {
+		List<int[]> elements = new ArrayList<>();
+		int i = skipWhitespace(json, array + 1);
+		while (i < json.length() && json.charAt(i) != ']') {
+			int end = skipValue(json, i);
+			elements.add(new int[] { i, end });
+			i = skipWhitespace(json, end);
+			if (i < json.length() && json.charAt(i) == ',') {
+				i = skipWhitespace(json, i + 1);
+			}
+		}
+		return elements;
+	}
+
+	private static int skipWhitespace(String json, int i) {
+		while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the position after the string starting at the given quote.
+	 */
+	private static int skipString(String json, int i) {
+		i++;
+		while (i < json.length()) {
+			char c = json.charAt(i++);
+			if (c == '\\') {
+				i++;
+			} else if (c == '"') {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("unterminated string in JSON");
+	}
+
+	private static int skipValue(String json, int i) {
+		char first = json.charAt(i);
+		if (first == '"') {
+			return skipString(json, i);
+		}
+		if (first != '{' && first != '[') {
+			while (i < json.length() && ",}] \t\r\n".indexOf(json.charAt(i)) < 0) {
+				i++;
+			}
+			return i;
+		}
+		int depth = 0;
+		while (i < json.length()) {
+			char c = json.charAt(i);
+			if (c == '"') {
+				i = skipString(json, i);
+				continue;
+			}
+			if (c == '{' || c == '[') {
+				depth++;
+			} else if (c == '}' || c == ']') {
+				depth--;
+				if (depth == 0) {
+					return i + 1;
+				}
+			}
+			i++;
+		}
+		throw new IllegalArgumentException("unterminated " + (first == '{' ? "object" : "array") + " in JSON");
+	}
+}
@@ -0,0 +1,108 @@
+package data.loader.sst;
+
+import java.io.IOException;
+
+/**
+ * {@link TokenSink} that joins the printed tokens into one line, like {@link SSTCorpusConverter#toLine(CharSequence)}:
+ * every run of tab and line break separators becomes a single tab, and the separators before the first token and
+ * after the last one are dropped. The line is passed on to a target sink in chunks. The offset of the cursor, which
+ * the context reports before the characters at the cursor are written, is mapped to its offset in the line like
+ * {@link SSTCorpusConverter#lineOffset(CharSequence, long)} does.
+ * <p>
+ * A sink is meant to be used by a single thread, for one line at a time; {@link #start(TokenSink)} begins the next one.
+ */
+public class LineTokenSink implements TokenSink {
+
+	public static final int DEFAULT_CHUNK_SIZE = 8 * 1024;
+
+	private final char[] _chunk;
+	private int _chunkLength;
+	private TokenSink _target;
+	private long _printed;
+	private long _written;
+	private boolean _separator;
+	private long _cursor = -1;
+	private long _cursorOffset = -1;
+
+	public LineTokenSink() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public LineTokenSink(int chunkSize) {
+		_chunk = new char[chunkSize];
+	}
+
+	/**
+	 * Begins a new line that is written to the given sink.
+	 */
+	public void start(TokenSink target) {
+		_target = target;
+		_chunkLength = 0;
+		_printed = 0;
+		_written = 0;
+		_separator = false;
+		_cursor = -1;
+		_cursorOffset = -1;
+	}
+
+	/**
+	 * Returns the offset of the cursor in the current line, or -1 if no cursor has been reported or the line has not
+	 * reached it yet.
+	 */
+	public long getCursorOffset() {
+		return _cursorOffset;
+	}
+
+	@Override
+	public void cursor(long charOffset) {
+		if (charOffset < _printed) {
+			throw new IllegalStateException("cursor at " + charOffset + " reported after " + _printed + " characters");
+		}
+		_cursor = charOffset;
+		_cursorOffset = -1;
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			char c = chars[i];
+			boolean separator = c == '\t' || c == '\n';
+			if (_printed++ == _cursor) {
+				_cursorOffset = _separator && !separator ? _written + 1 : _written;
+			}
+			if (separator) {
+				_separator = _written > 0;
+			} else {
+				if (_separator) {
+					append('\t');
+					_separator = false;
+				}
+				append(c);
+			}
+		}
+	}
+
+	private void append(char c) throws IOException {
+		if (_chunkLength == _chunk.length) {
+			_target.write(_chunk, 0, _chunkLength);
+			_chunkLength = 0;
+		}
+		_chunk[_chunkLength++] = c;
+		_written++;
+	}
+
+	/**
+	 * Writes the line so far to the target sink and flushes it. A cursor at the end of the printed characters is
+	 * placed at the end of the line.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (_cursor >= 0 && _cursorOffset < 0) {
+			_cursorOffset = _written;
+		}
+		_target.write(_chunk, 0, _chunkLength);
+		_chunkLength = 0;
+		_target.flush();
+	}
+}
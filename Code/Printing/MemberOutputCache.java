@@ -0,0 +1,156 @@
+package data.loader.sst;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cc.kave.commons.model.ssts.IMemberDeclaration;
+import cc.kave.commons.utils.io.json.JsonSerialization;
+
+/**
+ * Bounded LRU cache of the printed output of member declarations, see
+ * {@link SSTPrintingVisitorExtended#setMemberCache(MemberOutputCache)}. Entries are keyed by a 128-bit digest of the
+ * JSON of the declaration and the indentation level it was printed at, so that the cache holds no declarations (nor
+ * the JSON that lazy declarations are read from) and a lookup compares two longs. Lazy declarations of
+ * {@link LazySSTReader} are digested from their JSON text without being deserialized; other declarations are
+ * serialized to be digested, which the visitor does once per declaration instance for as long as it prints the same
+ * SST. Entries are evicted least recently used first once the cached output exceeds the
+ * character budget.
+ * <p>
+ * The cache is thread-safe, but the printed output depends on the visitor's configuration, so a cache must only be
+ * shared between visitors that are configured the same way.
+ */
+public class MemberOutputCache {
+
+	public static final long DEFAULT_MAX_CHARS = 16 * 1024 * 1024;
+
+	private final long _maxChars;
+	private final LinkedHashMap<Key, String> _entries = new LinkedHashMap<>(256, 0.75f, true);
+	private long _chars;
+	private long _hits;
+	private long _misses;
+
+	public MemberOutputCache() {
+		this(DEFAULT_MAX_CHARS);
+	}
+
+	/**
+	 * @param maxChars
+	 *            total length of the cached output above which entries are evicted
+	 */
+	public MemberOutputCache(long maxChars) {
+		_maxChars = maxChars;
+	}
+
+	/**
+	 * Returns the key of a declaration printed at the given indentation level, for {@link #get(Key)} and
+	 * {@link #put(Key, String)}.
+	 */
+	public static Key key(IMemberDeclaration member, int indentationLevel) {
+		long[] digest = LazySSTReader.digest(member);
+		return key(digest != null ? digest : serializedDigest(member), indentationLevel);
+	}
+
+	static Key key(long[] digest, int indentationLevel) {
+		return new Key(digest[0], digest[1], indentationLevel);
+	}
+
+	/**
+	 * Returns the digest of the JSON serialization of a declaration that is not lazy.
+	 */
+	static long[] serializedDigest(IMemberDeclaration member) {
+		String json = JsonSerialization.toJson(member);
+		return digest(json, 0, json.length());
+	}
+
+	/**
+	 * Returns the output printed for a declaration with the same key, i.e. an equal declaration at the same
+	 * indentation level, or null.
+	 */
+	public synchronized String get(Key key) {
+		String output = _entries.get(key);
+		if (output != null) {
+			_hits++;
+		} else {
+			_misses++;
+		}
+		return output;
+	}
+
+	public synchronized void put(Key key, String output) {
+		String previous = _entries.put(key, output);
+		_chars += output.length() - (previous != null ? previous.length() : 0);
+		Iterator<Map.Entry<Key, String>> eldest = _entries.entrySet().iterator();
+		while (_chars > _maxChars && eldest.hasNext()) {
+			_chars -= eldest.next().getValue().length();
+			eldest.remove();
+		}
+	}
+
+	public synchronized void clear() {
+		_entries.clear();
+		_chars = 0;
+	}
+
+	public synchronized int size() {
+		return _entries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return _hits;
+	}
+
+	public synchronized long getMissCount() {
+		return _misses;
+	}
+
+	/**
+	 * Returns a 128-bit digest of the characters from start to end: a 64-bit FNV-1a hash and a 64-bit polynomial hash,
+	 * each finished with the length and a bit mixer.
+	 */
+	static long[] digest(CharSequence text, int start, int end) {
+		long fnv = 0xcbf29ce484222325L;
+		long polynomial = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			fnv = (fnv ^ c) * 0x100000001b3L;
+			polynomial = (polynomial + c) * 0x9e3779b97f4a7c15L;
+		}
+		return new long[] { mix(fnv ^ (end - start)), mix(polynomial + (end - start)) };
+	}
+
+	private static long mix(long h) {
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * The digest of a declaration and the indentation level it is printed at.
+	 */
+	public static final class Key {
+		private final long _high;
+		private final long _low;
+		private final int _indentationLevel;
+
+		Key(long high, long low, int indentationLevel) {
+			_high = high;
+			_low = low;
+			_indentationLevel = indentationLevel;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) _high + 31 * _indentationLevel;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return _high == other._high && _low == other._low && _indentationLevel == other._indentationLevel;
+		}
+	}
+}
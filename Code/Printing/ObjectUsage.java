@@ -0,0 +1,48 @@
+package data.loader.sst;
+
+import java.util.Collections;
+import java.util.List;
+
+import cc.kave.commons.model.naming.codeelements.IMethodName;
+import cc.kave.commons.model.naming.types.ITypeName;
+
+/**
+ * The usage of one object within a method, as extracted by {@link UsageFeatureExtractor}: the type of the object, the
+ * features of the context it is used in (e.g. the enclosing method and how the object was obtained), and the methods
+ * that are called on it.
+ */
+public class ObjectUsage {
+
+	private final ITypeName _type;
+	private final List<String> _features;
+	private final List<IMethodName> _calls;
+
+	public ObjectUsage(ITypeName type, List<String> features, List<IMethodName> calls) {
+		_type = type;
+		_features = Collections.unmodifiableList(features);
+		_calls = Collections.unmodifiableList(calls);
+	}
+
+	public ITypeName getType() {
+		return _type;
+	}
+
+	/**
+	 * The context features, like "in:&lt;method name&gt;" and "def:&lt;definition&gt;".
+	 */
+	public List<String> getFeatures() {
+		return _features;
+	}
+
+	/**
+	 * The methods called on the object, in order of appearance.
+	 */
+	public List<IMethodName> getCalls() {
+		return _calls;
+	}
+
+	@Override
+	public String toString() {
+		return "ObjectUsage(" + _type + ", " + _features + ", " + _calls + ")";
+	}
+}
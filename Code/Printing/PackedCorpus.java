@@ -0,0 +1,220 @@
+package data.loader.sst;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Memory-mapped view of a corpus written by {@link PackedCorpusWriter}. The tokens of a file are handed out as a
+ * read-only {@link IntBuffer} over the mapped file, without copying, so files can be sampled, sharded or revisited at
+ * random without reading the corpus as text.
+ * <p>
+ * The token array is mapped in segments of at most 1 GB that each hold whole files, so corpora larger than a single
+ * mapping can be read. The corpus is read-only and can be used from several threads.
+ */
+public class PackedCorpus {
+
+	private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+	private final int _fileCount;
+	private final int _partitionCount;
+	private final int _vocabularySize;
+	private final long _tokenCount;
+	private final LongBuffer _offsets;
+	private final IntBuffer _filePartitions;
+	private final IntBuffer _partitionNameOffsets;
+	private final ByteBuffer _partitionNames;
+	private final IntBuffer _tokenOffsets;
+	private final ByteBuffer _tokens;
+	// the first token of each segment, and the mapped segments
+	private final long[] _segmentStarts;
+	private final IntBuffer[] _segments;
+	private Vocabulary _vocabulary;
+
+	private PackedCorpus(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(PackedCorpusWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0) {
+				break;
+			}
+		}
+		header.flip();
+		if (header.remaining() < PackedCorpusWriter.HEADER_SIZE || header.getInt(0) != PackedCorpusWriter.MAGIC) {
+			throw new IOException("not a packed corpus");
+		}
+		if (header.getInt(4) != PackedCorpusWriter.VERSION) {
+			throw new IOException("unsupported packed corpus version " + header.getInt(4));
+		}
+		_fileCount = header.getInt(8);
+		_partitionCount = header.getInt(12);
+		_vocabularySize = header.getInt(16);
+		_tokenCount = header.getLong(24);
+		long indexPosition = header.getLong(32);
+
+		ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexPosition, channel.size() - indexPosition)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		int position = 0;
+		_offsets = slice(index, position, (_fileCount + 1) * 8).asLongBuffer();
+		position += (_fileCount + 1) * 8;
+		_filePartitions = slice(index, position, _fileCount * 4).asIntBuffer();
+		position += _fileCount * 4;
+		_partitionNameOffsets = slice(index, position, (_partitionCount + 1) * 4).asIntBuffer();
+		position += (_partitionCount + 1) * 4;
+		_partitionNames = slice(index, position, _partitionNameOffsets.get(_partitionCount));
+		position += _partitionNameOffsets.get(_partitionCount);
+		_tokenOffsets = slice(index, position, (_vocabularySize + 1) * 4).asIntBuffer();
+		position += (_vocabularySize + 1) * 4;
+		_tokens = slice(index, position, _tokenOffsets.get(_vocabularySize));
+
+		// split the token array at file boundaries into segments of at most MAX_SEGMENT_BYTES
+		List<long[]> segments = new ArrayList<>();
+		long start = 0;
+		for (int file = 0; file < _fileCount; file++) {
+			long end = _offsets.get(file + 1);
+			if ((end - start) * 4 > MAX_SEGMENT_BYTES && _offsets.get(file) > start) {
+				segments.add(new long[] { start, _offsets.get(file) });
+				start = _offsets.get(file);
+			}
+		}
+		segments.add(new long[] { start, _tokenCount });
+		_segmentStarts = new long[segments.size()];
+		_segments = new IntBuffer[segments.size()];
+		for (int i = 0; i < segments.size(); i++) {
+			long[] segment = segments.get(i);
+			_segmentStarts[i] = segment[0];
+			_segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+					PackedCorpusWriter.HEADER_SIZE + segment[0] * 4, (segment[1] - segment[0]) * 4)
+					.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		}
+	}
+
+	/**
+	 * Maps a packed corpus file into memory.
+	 */
+	public static PackedCorpus open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new PackedCorpus(channel);
+		}
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int position, int length) throws IOException {
+		if (position + length > buffer.capacity()) {
+			throw new IOException("truncated packed corpus index");
+		}
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(position).limit(position + length);
+		return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public int getFileCount() {
+		return _fileCount;
+	}
+
+	public long getTokenCount() {
+		return _tokenCount;
+	}
+
+	public int getPartitionCount() {
+		return _partitionCount;
+	}
+
+	public int getVocabularySize() {
+		return _vocabularySize;
+	}
+
+	/**
+	 * The number of tokens of a file.
+	 */
+	public int length(int file) {
+		return (int) (_offsets.get(file + 1) - _offsets.get(file));
+	}
+
+	/**
+	 * Returns the token IDs of a file as a read-only view of the mapped corpus.
+	 */
+	public IntBuffer tokens(int file) {
+		long start = _offsets.get(file);
+		int segment = Arrays.binarySearch(_segmentStarts, start);
+		if (segment < 0) {
+			segment = -segment - 2;
+		}
+		// an empty file at the end of a segment may start at the next one
+		while (segment + 1 < _segments.length && _segmentStarts[segment + 1] <= start) {
+			segment++;
+		}
+		IntBuffer tokens = _segments[segment].duplicate();
+		int position = (int) (start - _segmentStarts[segment]);
+		tokens.position(position).limit(position + length(file));
+		return tokens.slice();
+	}
+
+	/**
+	 * The partition the file belongs to.
+	 */
+	public int partition(int file) {
+		return _filePartitions.get(file);
+	}
+
+	public String partitionName(int partition) {
+		return string(_partitionNameOffsets, _partitionNames, partition);
+	}
+
+	/**
+	 * Returns the files of a partition, in ascending order.
+	 */
+	public int[] files(int partition) {
+		int count = 0;
+		for (int file = 0; file < _fileCount; file++) {
+			if (_filePartitions.get(file) == partition) {
+				count++;
+			}
+		}
+		int[] files = new int[count];
+		count = 0;
+		for (int file = 0; file < _fileCount; file++) {
+			if (_filePartitions.get(file) == partition) {
+				files[count++] = file;
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Returns the token with the given ID.
+	 */
+	public String token(int id) {
+		return string(_tokenOffsets, _tokens, id);
+	}
+
+	/**
+	 * Returns the vocabulary of the corpus, reading it on first use.
+	 */
+	public synchronized Vocabulary getVocabulary() {
+		if (_vocabulary == null) {
+			Vocabulary vocabulary = new Vocabulary();
+			for (int id = 0; id < _vocabularySize; id++) {
+				vocabulary.id(token(id));
+			}
+			_vocabulary = vocabulary;
+		}
+		return _vocabulary;
+	}
+
+	private static String string(IntBuffer offsets, ByteBuffer pool, int id) {
+		int start = offsets.get(id);
+		byte[] bytes = new byte[offsets.get(id + 1) - start];
+		ByteBuffer source = pool.duplicate();
+		source.position(start);
+		source.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,216 @@
+package data.loader.sst;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes a packed corpus, to be memory-mapped by {@link PackedCorpus}: the token IDs of all files as one array of
+ * little-endian int32 values, followed by an index with the start of every file, the partition (e.g. the repository)
+ * every file belongs to, the partition names, and the vocabulary of the IDs.
+ * <p>
+ * Files are numbered in the order in which they are added. Adding files is thread-safe, and files of different
+ * partitions may be interleaved.
+ */
+public class PackedCorpusWriter implements Closeable {
+
+	static final int MAGIC = 0x50434B43;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private final FileChannel _channel;
+	private final Vocabulary _vocabulary;
+	private final ByteBuffer _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private final Map<String, Integer> _partitionIds = new HashMap<>();
+	private final List<String> _partitions = new ArrayList<>();
+	private long[] _offsets = new long[1024];
+	private int[] _filePartitions = new int[1024];
+	private int _fileCount;
+	private long _tokenCount;
+
+	/**
+	 * @param vocabulary
+	 *            the vocabulary of the token IDs, which is stored with the corpus when it is closed
+	 */
+	public PackedCorpusWriter(Path file, Vocabulary vocabulary) throws IOException {
+		_channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		_vocabulary = vocabulary;
+		_channel.position(HEADER_SIZE);
+	}
+
+	/**
+	 * Packs plain-text data: a file, or all files below a directory, with one file of tab-separated tokens per line.
+	 * Each input file becomes a partition, named by its path relative to the input.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: PackedCorpusWriter <text file or dir> <corpus file>");
+			System.exit(1);
+		}
+		Path input = Paths.get(args[0]);
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(input)) {
+			files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+		Vocabulary vocabulary = new Vocabulary();
+		TokenIdSink ids = new TokenIdSink(vocabulary);
+		try (PackedCorpusWriter writer = new PackedCorpusWriter(Paths.get(args[1]), vocabulary)) {
+			for (Path file : files) {
+				String name = file.equals(input) ? file.getFileName().toString() : input.relativize(file).toString();
+				int partition = writer.partition(name);
+				try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+					String line;
+					while ((line = in.readLine()) != null) {
+						char[] chars = line.toCharArray();
+						ids.write(chars, 0, chars.length);
+						ids.flush();
+						writer.addFile(partition, ids.getTokenIds());
+						ids.endFile();
+					}
+				}
+			}
+			System.out.println(writer.getFileCount() + " files, " + writer.getTokenCount() + " tokens, "
+					+ vocabulary.size() + " token types");
+		}
+	}
+
+	/**
+	 * Returns the ID of the partition with the given name, adding it if necessary.
+	 */
+	public synchronized int partition(String name) {
+		Integer id = _partitionIds.get(name);
+		if (id == null) {
+			id = _partitions.size();
+			_partitionIds.put(name, id);
+			_partitions.add(name);
+		}
+		return id;
+	}
+
+	public Vocabulary getVocabulary() {
+		return _vocabulary;
+	}
+
+	public synchronized int getFileCount() {
+		return _fileCount;
+	}
+
+	public synchronized long getTokenCount() {
+		return _tokenCount;
+	}
+
+	/**
+	 * Adds a file and returns its ID.
+	 */
+	public int addFile(int partition, int[] tokenIds) throws IOException {
+		return addFile(partition, tokenIds, 0, tokenIds.length);
+	}
+
+	/**
+	 * Adds the file made of length token IDs from offset and returns its ID.
+	 */
+	public synchronized int addFile(int partition, int[] tokenIds, int offset, int length) throws IOException {
+		if (partition < 0 || partition >= _partitions.size()) {
+			throw new IllegalArgumentException("unknown partition " + partition);
+		}
+		if (_fileCount + 1 >= _offsets.length) {
+			_offsets = Arrays.copyOf(_offsets, _offsets.length * 2);
+			_filePartitions = Arrays.copyOf(_filePartitions, _filePartitions.length * 2);
+		}
+		for (int i = offset; i < offset + length; i++) {
+			if (!_buffer.hasRemaining()) {
+				drain();
+			}
+			_buffer.putInt(tokenIds[i]);
+		}
+		_filePartitions[_fileCount] = partition;
+		_tokenCount += length;
+		_offsets[++_fileCount] = _tokenCount;
+		return _fileCount - 1;
+	}
+
+	/**
+	 * Writes the index and the vocabulary, and closes the file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			drain();
+			long indexPosition = _channel.position();
+			ByteBuffer offsets = ByteBuffer.allocate((_fileCount + 1) * 8).order(ByteOrder.LITTLE_ENDIAN);
+			offsets.asLongBuffer().put(_offsets, 0, _fileCount + 1);
+			writeFully(offsets);
+			ByteBuffer partitions = ByteBuffer.allocate(_fileCount * 4).order(ByteOrder.LITTLE_ENDIAN);
+			partitions.asIntBuffer().put(_filePartitions, 0, _fileCount);
+			writeFully(partitions);
+			writeStrings(_partitions);
+			List<String> tokens = new ArrayList<>();
+			synchronized (_vocabulary) {
+				for (int id = 0; id < _vocabulary.size(); id++) {
+					tokens.add(_vocabulary.token(id));
+				}
+			}
+			writeStrings(tokens);
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(_fileCount).putInt(_partitions.size()).putInt(tokens.size())
+					.putInt(0).putLong(_tokenCount).putLong(indexPosition);
+			header.clear();
+			_channel.position(0);
+			writeFully(header);
+		} finally {
+			_channel.close();
+		}
+	}
+
+	/**
+	 * Writes a string pool: the offsets of the strings (one more than there are strings), and their UTF-8 bytes.
+	 */
+	private void writeStrings(List<String> strings) throws IOException {
+		List<byte[]> encoded = new ArrayList<>(strings.size());
+		ByteBuffer offsets = ByteBuffer.allocate((strings.size() + 1) * 4).order(ByteOrder.LITTLE_ENDIAN);
+		int length = 0;
+		offsets.putInt(length);
+		for (String s : strings) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			encoded.add(bytes);
+			length += bytes.length;
+			offsets.putInt(length);
+		}
+		offsets.flip();
+		writeFully(offsets);
+		for (byte[] bytes : encoded) {
+			writeFully(ByteBuffer.wrap(bytes));
+		}
+	}
+
+	private void drain() throws IOException {
+		_buffer.flip();
+		writeFully(_buffer);
+		_buffer.clear();
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			_channel.write(buffer);
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package data.loader.sst;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Scoped table of the expressions that are re-inlined for the "$N" placeholder variables of an SST. Entries are
+ * addressed by the numeric suffix of the placeholder, so lookups need neither hashing nor string comparison.
+ * <p>
+ * Entries belong to the innermost open frame (one per member, accessor or lambda body) and are removed, restoring any
+ * value they shadowed, when that frame is exited. Entries stored while no frame is open are kept until {@link #clear()}. Once the outermost frame is exited the table is empty again and
+ * storage that grew beyond {@link #RETAINED_CAPACITY} is released, so a visitor that prints many SSTs stays at a
+ * steady size.
+ */
+class ReferenceTable {
+
+	/**
+	 * Returned by {@link #placeholderIndex(CharSequence)} for identifiers that are not placeholders.
+	 */
+	static final int NONE = -1;
+
+	/**
+	 * Returned by {@link #placeholderIndex(CharSequence)} for placeholders that are not addressed by index, i.e.,
+	 * suffixes with leading zeros or beyond {@link #MAX_INDEX}.
+	 */
+	static final int OVERFLOW = -2;
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int RETAINED_CAPACITY = 4096;
+	private static final int MAX_INDEX = 1 << 20;
+
+	private String[] _values = new String[INITIAL_CAPACITY];
+	private final Map<String, String> _overflow = new HashMap<>();
+
+	private int[] _undoIndex = new int[INITIAL_CAPACITY];
+	private String[] _undoKey = new String[INITIAL_CAPACITY];
+	private String[] _undoValue = new String[INITIAL_CAPACITY];
+	private int _undoSize;
+
+	private int[] _frames = new int[16];
+	private int _depth;
+	private boolean _unscoped;
+
+	/**
+	 * Returns the numeric suffix of a "$N" placeholder, {@link #OVERFLOW} for placeholders that have to be kept by
+	 * name, or {@link #NONE} if the identifier is not a placeholder.
+	 */
+	static int placeholderIndex(CharSequence id) {
+		int length = id.length();
+		if (length < 2 || id.charAt(0) != '$') {
+			return NONE;
+		}
+		long value = 0;
+		for (int i = 1; i < length; i++) {
+			char c = id.charAt(i);
+			if (c < '0' || c > '9') {
+				return NONE;
+			}
+			if (value < MAX_INDEX) {
+				value = value * 10 + (c - '0');
+			}
+		}
+		boolean canonical = length == 2 || id.charAt(1) != '0';
+		return canonical && value < MAX_INDEX ? (int) value : OVERFLOW;
+	}
+
+	void enterFrame() {
+		if (_depth == _frames.length) {
+			_frames = Arrays.copyOf(_frames, _depth * 2);
+		}
+		_frames[_depth++] = _undoSize;
+	}
+
+	void exitFrame() {
+		int mark = _frames[--_depth];
+		while (_undoSize > mark) {
+			_undoSize--;
+			int index = _undoIndex[_undoSize];
+			if (index >= 0) {
+				_values[index] = _undoValue[_undoSize];
+			} else if (_undoValue[_undoSize] != null) {
+				_overflow.put(_undoKey[_undoSize], _undoValue[_undoSize]);
+			} else {
+				_overflow.remove(_undoKey[_undoSize]);
+			}
+			_undoKey[_undoSize] = null;
+			_undoValue[_undoSize] = null;
+		}
+		if (_depth == 0) {
+			release();
+		}
+	}
+
+	/**
+	 * Returns the expression stored for the given placeholder, or null if there is none.
+	 */
+	String get(String id) {
+		int index = placeholderIndex(id);
+		if (index >= 0) {
+			return index < _values.length ? _values[index] : null;
+		}
+		return index == OVERFLOW ? _overflow.get(id) : null;
+	}
+
+	/**
+	 * Stores the expression for a placeholder in the innermost open frame. Identifiers that are not placeholders are
+	 * ignored.
+	 */
+	void put(String id, String value) {
+		int index = placeholderIndex(id);
+		if (index == NONE) {
+			return;
+		}
+		String previous;
+		if (index >= 0) {
+			if (index >= _values.length) {
+				_values = Arrays.copyOf(_values, Math.max(index + 1, _values.length * 2));
+			}
+			previous = _values[index];
+			_values[index] = value;
+		} else {
+			previous = _overflow.put(id, value);
+		}
+		if (_depth > 0) {
+			log(index, id, previous);
+		} else {
+			_unscoped = true;
+		}
+	}
+
+	/**
+	 * Removes all entries, including those stored while no frame was open, and closes all open frames.
+	 */
+	void clear() {
+		_depth = 0;
+		_unscoped = false;
+		_undoSize = 0;
+		Arrays.fill(_values, null);
+		Arrays.fill(_undoKey, null);
+		Arrays.fill(_undoValue, null);
+		_overflow.clear();
+		release();
+	}
+
+	private void log(int index, String id, String previous) {
+		if (_undoSize == _undoIndex.length) {
+			int capacity = _undoSize * 2;
+			_undoIndex = Arrays.copyOf(_undoIndex, capacity);
+			_undoKey = Arrays.copyOf(_undoKey, capacity);
+			_undoValue = Arrays.copyOf(_undoValue, capacity);
+		}
+		_undoIndex[_undoSize] = index;
+		_undoKey[_undoSize] = index >= 0 ? null : id;
+		_undoValue[_undoSize] = previous;
+		_undoSize++;
+	}
+
+	private void release() {
+		if (_values.length > RETAINED_CAPACITY && !_unscoped) {
+			_values = new String[INITIAL_CAPACITY];
+		}
+		if (_undoIndex.length > RETAINED_CAPACITY) {
+			_undoIndex = new int[INITIAL_CAPACITY];
+			_undoKey = new String[INITIAL_CAPACITY];
+			_undoValue = new String[INITIAL_CAPACITY];
+		}
+	}
+}
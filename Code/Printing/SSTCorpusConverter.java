@@ -0,0 +1,621 @@
+package data.loader.sst;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import cc.kave.commons.model.events.completionevents.Context;
+import cc.kave.commons.model.ssts.ISST;
+import cc.kave.commons.utils.io.ReadingArchive;
+import cc.kave.commons.utils.io.json.JsonSerialization;
+
+/**
+ * Converts SSTs to the plain-text format, printing each SST as one line of tab-separated tokens. Inputs are the Kave
+ * context archives ("*.zip", one per repository) and the JSON files of the SST completion events ("*.json"). For each
+ * input file, a ".txt" file at the same relative path below the output directory receives one line per SST; SSTs that
+ * cannot be printed are reported and skipped. For completion events, the position of the cursor in the printed line is
+ * written to a ".cursor" sidecar file next to it (see {@link CursorPosition}). Optionally, the token IDs of all SSTs
+ * are also written to a packed corpus (see {@link #setPackedCorpus(PackedCorpusWriter)}), and the tokens counted for
+ * a frequency-sorted vocabulary in the same pass (see {@link #setTokenCounter(TokenCounter)}).
+ * <p>
+ * The conversion runs on a fork-join pool. Every input file is a task, and archives are further split into batches of
+ * SSTs, so idle workers steal batches from the large repositories once the small ones are done. The visitor is
+ * stateful, so every worker thread prints with its own visitor and context.
+ * <p>
+ * Unless a window is set, an SST is streamed from a sink-backed context through a {@link LineTokenSink} into a line
+ * buffer that every worker thread reuses, so its output is held in full only once, as its line.
+ */
+public class SSTCorpusConverter {
+
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	private final Path _input;
+	private final Path _output;
+	private final int _batchSize;
+	private final ThreadLocal<SSTPrintingVisitorExtended> _visitors;
+	private final ThreadLocal<SSTPrintingContextExtended> _contexts = ThreadLocal
+			.withInitial(SSTPrintingContextExtended::new);
+	private final ThreadLocal<LinePrinter> _linePrinters = ThreadLocal.withInitial(LinePrinter::new);
+
+	private PackedCorpusWriter _packed;
+	private ThreadLocal<TokenIdSink> _idSinks;
+	private TokenCounter _counter;
+	private boolean _lazyLoading;
+	private int _leftWindow = -1;
+	private int _rightWindow = -1;
+	private TypeNameCache _typeNames;
+	private TypeHeaderCache _typeHeaders;
+	private ThreadLocal<TokenCountingSink> _countingSinks;
+	private final List<TokenCountingSink> _allCountingSinks = Collections.synchronizedList(new ArrayList<>());
+
+	private final AtomicInteger _printed = new AtomicInteger();
+	private final AtomicInteger _failed = new AtomicInteger();
+
+	public SSTCorpusConverter(Path input, Path output) {
+		this(input, output, SSTPrintingVisitorExtended::new, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * @param visitors
+	 *            creates the visitor of each worker thread
+	 * @param batchSize
+	 *            number of SSTs of an archive that are printed by one task
+	 */
+	public SSTCorpusConverter(Path input, Path output, Supplier<SSTPrintingVisitorExtended> visitors, int batchSize) {
+		_input = input;
+		_output = output;
+		_batchSize = batchSize;
+		_visitors = ThreadLocal.withInitial(visitors);
+	}
+
+	/**
+	 * Converts the inputs below the input directory. With a dictionary file, the tokens are counted as they are
+	 * printed, and the dictionary is written with the given minimum count and maximum size; with "sketch", they are
+	 * instead counted from the written text files after the conversion, with a count-min sketch pre-pass that rules
+	 * out the tokens below the minimum count, which bounds the memory of the counts on large corpora.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: SSTCorpusConverter <input dir> <output dir> [threads] [packed corpus file or -]"
+					+ " [dictionary file] [min count] [max size] [sketch]");
+			System.exit(1);
+		}
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long minCount = args.length > 5 ? Long.parseLong(args[5]) : 1;
+		int maxSize = args.length > 6 ? Integer.parseInt(args[6]) : Integer.MAX_VALUE;
+		boolean sketch = args.length > 7 && args[7].equals("sketch");
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		SSTCorpusConverter converter = new SSTCorpusConverter(Paths.get(args[0]), Paths.get(args[1]));
+		converter.setTypeNameCache(new TypeNameCache());
+		converter.setTypeHeaderCache(new TypeHeaderCache());
+		if (args.length > 4 && !sketch) {
+			converter.setTokenCounter(new TokenCounter());
+		}
+		if (args.length > 3 && !args[3].equals("-")) {
+			try (PackedCorpusWriter packed = new PackedCorpusWriter(Paths.get(args[3]), new Vocabulary())) {
+				converter.setPackedCorpus(packed);
+				converter.convert(pool);
+			}
+		} else {
+			converter.convert(pool);
+		}
+		System.out.println(converter.getPrintedCount() + " SSTs printed, " + converter.getFailedCount() + " failed");
+		TypeNameCache typeNames = converter.getTypeNameCache();
+		System.out.println(typeNames.getHitCount() + " type name cache hits, " + typeNames.getMissCount() + " misses");
+		TypeHeaderCache typeHeaders = converter.getTypeHeaderCache();
+		System.out.println(typeHeaders.getHitCount() + " type header cache hits, " + typeHeaders.getMissCount()
+				+ " misses");
+		if (args.length > 4) {
+			TokenCounter counter = converter.getTokenCounter();
+			if (sketch) {
+				List<Path> lines;
+				try (Stream<Path> files = Files.walk(Paths.get(args[1]))) {
+					lines = files.filter(p -> p.toString().endsWith(".txt")).collect(Collectors.toList());
+				}
+				counter = TokenCounter.count(pool, lines, minCount);
+			}
+			try (Writer out = Files.newBufferedWriter(Paths.get(args[4]), StandardCharsets.UTF_8)) {
+				counter.write(out, minCount, maxSize);
+			}
+		}
+	}
+
+	public void convert(ForkJoinPool pool) throws IOException {
+		List<Path> inputs;
+		try (Stream<Path> files = Files.walk(_input)) {
+			inputs = files.filter(p -> isArchive(p) || isJson(p)).collect(Collectors.toList());
+		}
+		// largest inputs first, so that they do not end up as the tail of the run
+		inputs.sort(Comparator.comparingLong(SSTCorpusConverter::size).reversed());
+		pool.invoke(new ConvertAll(inputs));
+		synchronized (_allCountingSinks) {
+			for (TokenCountingSink sink : _allCountingSinks) {
+				sink.drain();
+			}
+		}
+	}
+
+	public PackedCorpusWriter getPackedCorpus() {
+		return _packed;
+	}
+
+	/**
+	 * Sets a packed corpus that additionally receives the token IDs of every printed SST, with one partition per
+	 * input archive (or per directory of JSON files). Null writes the text output only.
+	 */
+	public void setPackedCorpus(PackedCorpusWriter packed) {
+		_packed = packed;
+		_idSinks = packed != null ? ThreadLocal.withInitial(() -> new TokenIdSink(packed.getVocabulary())) : null;
+	}
+
+	public boolean isLazyLoading() {
+		return _lazyLoading;
+	}
+
+	/**
+	 * Reads the JSON files of completion events with {@link LazySSTReader}, so that only the members around the
+	 * completion are deserialized up front. The output is the same as without lazy loading.
+	 */
+	public void setLazyLoading(boolean lazyLoading) {
+		_lazyLoading = lazyLoading;
+	}
+
+	public int getLeftWindow() {
+		return _leftWindow;
+	}
+
+	public int getRightWindow() {
+		return _rightWindow;
+	}
+
+	/**
+	 * Prints only a window of tokens around the cursor of completion events, see
+	 * {@link SSTPrintingContextExtended#setWindow(int, int)}; the archives are printed in full. Negative values do not
+	 * limit that side.
+	 */
+	public void setWindow(int leftWindow, int rightWindow) {
+		_leftWindow = leftWindow;
+		_rightWindow = rightWindow;
+	}
+
+	public TypeNameCache getTypeNameCache() {
+		return _typeNames;
+	}
+
+	/**
+	 * Sets a cache of rendered type names that is shared by all worker threads, see
+	 * {@link SSTPrintingContextExtended#setTypeNameCache(TypeNameCache)}. Null renders every type name.
+	 */
+	public void setTypeNameCache(TypeNameCache typeNames) {
+		_typeNames = typeNames;
+	}
+
+	public TypeHeaderCache getTypeHeaderCache() {
+		return _typeHeaders;
+	}
+
+	/**
+	 * Sets a cache of printed type headers that is shared by all worker threads, see
+	 * {@link SSTPrintingVisitorExtended#setTypeHeaderCache(TypeHeaderCache)}. Null leaves the visitors as they are
+	 * configured.
+	 */
+	public void setTypeHeaderCache(TypeHeaderCache typeHeaders) {
+		_typeHeaders = typeHeaders;
+	}
+
+	public TokenCounter getTokenCounter() {
+		return _counter;
+	}
+
+	/**
+	 * Sets a counter that additionally counts the tokens of every printed SST; the counts are complete when
+	 * {@link #convert(ForkJoinPool)} returns. Null does not count.
+	 */
+	public void setTokenCounter(TokenCounter counter) {
+		_counter = counter;
+		_countingSinks = counter != null ? ThreadLocal.withInitial(() -> {
+			TokenCountingSink sink = new TokenCountingSink(counter);
+			_allCountingSinks.add(sink);
+			return sink;
+		}) : null;
+	}
+
+	public int getPrintedCount() {
+		return _printed.get();
+	}
+
+	public int getFailedCount() {
+		return _failed.get();
+	}
+
+	private class ConvertAll extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final List<Path> _files;
+
+		ConvertAll(List<Path> files) {
+			_files = files;
+		}
+
+		@Override
+		protected void compute() {
+			List<ConvertFile> tasks = new ArrayList<>();
+			for (Path file : _files) {
+				tasks.add(new ConvertFile(file));
+			}
+			invokeAll(tasks);
+		}
+	}
+
+	private class ConvertFile extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Path _file;
+
+		ConvertFile(Path file) {
+			_file = file;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				if (isArchive(_file)) {
+					convertArchive(_file);
+				} else {
+					convertJson(_file);
+				}
+			} catch (IOException | RuntimeException e) {
+				System.err.println("cannot convert " + _file + ": " + e);
+			}
+		}
+	}
+
+	/**
+	 * The streaming printer of a worker thread: a sink-backed context whose output is joined into one line by a
+	 * {@link LineTokenSink} and collected in a reused buffer.
+	 */
+	private static class LinePrinter implements TokenSink {
+		private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+		private final LineTokenSink _lines = new LineTokenSink();
+		private final SSTPrintingContextExtended _context = new SSTPrintingContextExtended(_lines);
+		private final char[] _chunk = new char[LineTokenSink.DEFAULT_CHUNK_SIZE];
+		private StringBuilder _line = new StringBuilder();
+
+		SSTPrintingContextExtended start() {
+			if (_line.capacity() > MAX_RETAINED_CAPACITY) {
+				_line = new StringBuilder();
+			} else {
+				_line.setLength(0);
+			}
+			_lines.start(this);
+			return _context.reset();
+		}
+
+		/**
+		 * The position of the cursor in the line, or null.
+		 */
+		CursorPosition getCursorPosition() {
+			CursorPosition cursor = _context.getCursorPosition();
+			return cursor != null ? new CursorPosition(cursor.getTokenIndex(), _lines.getCursorOffset()) : null;
+		}
+
+		void writeLine(Writer out) throws IOException {
+			for (int start = 0; start < _line.length(); start += _chunk.length) {
+				int end = Math.min(_line.length(), start + _chunk.length);
+				_line.getChars(start, end, _chunk, 0);
+				out.write(_chunk, 0, end - start);
+			}
+		}
+
+		@Override
+		public void write(char[] chars, int offset, int length) {
+			_line.append(chars, offset, length);
+		}
+
+		@Override
+		public void flush() {
+		}
+	}
+
+	/**
+	 * A printed SST: its line, and its token IDs if a packed corpus is written.
+	 */
+	private static class Printed {
+		private final String _line;
+		private final int[] _ids;
+
+		Printed(String line, int[] ids) {
+			_line = line;
+			_ids = ids;
+		}
+	}
+
+	private class PrintBatch extends RecursiveTask<List<Printed>> {
+		private static final long serialVersionUID = 1L;
+		private final List<Context> _batch;
+
+		PrintBatch(List<Context> batch) {
+			_batch = batch;
+		}
+
+		@Override
+		protected List<Printed> compute() {
+			List<Printed> lines = new ArrayList<>(_batch.size());
+			for (Context context : _batch) {
+				LinePrinter printer = printLine(context);
+				if (printer != null) {
+					count(printer._line);
+					lines.add(new Printed(printer._line.toString(), tokenIds(printer._line)));
+				}
+			}
+			return lines;
+		}
+	}
+
+	private void convertArchive(Path archive) throws IOException {
+		Path target = targetFile(archive);
+		Files.createDirectories(target.getParent());
+		int partition = _packed != null ? _packed.partition(_input.relativize(archive).toString()) : -1;
+		// bounds the number of printed batches waiting to be written
+		int maxPending = 2 * ForkJoinTask.getPool().getParallelism();
+		ReadingArchive contexts = new ReadingArchive(archive.toFile());
+		try (Writer out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+			Deque<PrintBatch> pending = new ArrayDeque<>();
+			List<Context> batch = new ArrayList<>(_batchSize);
+			while (contexts.hasNext()) {
+				batch.add(contexts.getNext(Context.class));
+				if (batch.size() == _batchSize) {
+					PrintBatch task = new PrintBatch(batch);
+					task.fork();
+					pending.add(task);
+					batch = new ArrayList<>(_batchSize);
+				}
+				while (pending.size() > maxPending) {
+					write(out, partition, pending.poll().join());
+				}
+			}
+			if (!batch.isEmpty()) {
+				pending.add(new PrintBatch(batch));
+				pending.getLast().fork();
+			}
+			while (!pending.isEmpty()) {
+				write(out, partition, pending.poll().join());
+			}
+		} finally {
+			contexts.close();
+		}
+	}
+
+	private void convertJson(Path json) throws IOException {
+		Path target = targetFile(json);
+		Files.createDirectories(target.getParent());
+		String text = new String(Files.readAllBytes(json), StandardCharsets.UTF_8);
+		Context context = _lazyLoading ? LazySSTReader.readContext(text) : readContext(text);
+		// windowed output is short, so it is printed in memory and joined into a line afterwards
+		LinePrinter printer = null;
+		String line = null;
+		CursorPosition cursor;
+		if (_leftWindow >= 0 || _rightWindow >= 0) {
+			SSTPrintingContextExtended windowed = _contexts.get().reset();
+			windowed.setWindow(_leftWindow, _rightWindow);
+			SSTPrintingContextExtended printed = print(context, windowed);
+			if (printed == null) {
+				return;
+			}
+			String output = printed.toString();
+			line = toLine(output);
+			cursor = printed.getCursorPosition();
+			if (cursor != null) {
+				cursor = new CursorPosition(cursor.getTokenIndex(), lineOffset(output, cursor.getCharOffset()));
+			}
+		} else {
+			printer = printLine(context);
+			if (printer == null) {
+				return;
+			}
+			cursor = printer.getCursorPosition();
+		}
+		CharSequence printed = line != null ? line : printer._line;
+		count(printed);
+		try (Writer out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+			if (line != null) {
+				out.write(line);
+			} else {
+				printer.writeLine(out);
+			}
+			out.write('\n');
+		}
+		if (_packed != null) {
+			Path directory = _input.relativize(json).getParent();
+			_packed.addFile(_packed.partition(directory != null ? directory.toString() : ""), tokenIds(printed));
+		}
+		if (cursor != null) {
+			Path sidecar = target.resolveSibling(json.getFileName().toString().replaceFirst("\\.json$", ".cursor"));
+			try (Writer out = Files.newBufferedWriter(sidecar, StandardCharsets.UTF_8)) {
+				cursor.write(out);
+			}
+		}
+	}
+
+	/**
+	 * Prints an SST unwindowed into the line buffer of the worker thread. Returns the printer, or null if the SST
+	 * cannot be printed.
+	 */
+	private LinePrinter printLine(Context c) {
+		LinePrinter printer = _linePrinters.get();
+		SSTPrintingContextExtended context = print(c, printer.start());
+		if (context == null) {
+			return null;
+		}
+		context.flush();
+		return printer;
+	}
+
+	/**
+	 * Prints an SST into the given context. Returns the context, or null if the SST cannot be
+	 * printed.
+	 */
+	private SSTPrintingContextExtended print(Context c, SSTPrintingContextExtended context) {
+		SSTPrintingVisitorExtended visitor = _visitors.get();
+		if (_typeHeaders != null) {
+			visitor.setTypeHeaderCache(_typeHeaders);
+		}
+		context.setTypeShape(c.getTypeShape());
+		context.setTypeNameCache(_typeNames);
+		ISST sst = c.getSST();
+		try {
+			sst.accept(visitor, context);
+		} catch (RuntimeException e) {
+			_failed.incrementAndGet();
+			System.err.println("cannot print " + (sst != null ? sst.getEnclosingType() : null) + ": " + e);
+			return null;
+		}
+		_printed.incrementAndGet();
+		return context;
+	}
+
+	private void write(Writer out, int partition, List<Printed> lines) {
+		try {
+			for (Printed printed : lines) {
+				out.write(printed._line);
+				out.write('\n');
+				if (_packed != null) {
+					_packed.addFile(partition, printed._ids);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the token IDs of a printed line, read from the line without a copy. Null without a packed corpus.
+	 */
+	private int[] tokenIds(CharSequence line) {
+		if (_packed == null) {
+			return null;
+		}
+		TokenIdSink ids = _idSinks.get();
+		try {
+			ids.write(line, 0, line.length());
+			ids.flush();
+			int[] tokenIds = ids.getTokenIds();
+			ids.endFile();
+			return tokenIds;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Counts the tokens of a printed line, read from the line without a copy.
+	 */
+	private void count(CharSequence line) {
+		if (_counter != null) {
+			TokenCountingSink sink = _countingSinks.get();
+			try {
+				sink.write(line, 0, line.length());
+				sink.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Joins the tokens of the printed output with single tabs, dropping line breaks, indentation and empty tokens.
+	 */
+	static String toLine(CharSequence printed) {
+		StringBuilder line = new StringBuilder(printed.length());
+		boolean separator = false;
+		for (int i = 0; i < printed.length(); i++) {
+			char c = printed.charAt(i);
+			if (c == '\t' || c == '\n') {
+				separator = line.length() > 0;
+			} else {
+				if (separator) {
+					line.append('\t');
+					separator = false;
+				}
+				line.append(c);
+			}
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Maps a character offset in the printed output to the corresponding offset in the output of
+	 * {@link #toLine(CharSequence)}. Token indices are the same in both.
+	 */
+	static long lineOffset(CharSequence printed, long offset) {
+		long length = 0;
+		boolean separator = false;
+		for (int i = 0; i < offset && i < printed.length(); i++) {
+			char c = printed.charAt(i);
+			if (c == '\t' || c == '\n') {
+				separator = length > 0;
+			} else {
+				if (separator) {
+					length++;
+					separator = false;
+				}
+				length++;
+			}
+		}
+		boolean tokenFollows = offset < printed.length() && printed.charAt((int) offset) != '\t'
+				&& printed.charAt((int) offset) != '\n';
+		return separator && tokenFollows ? length + 1 : length;
+	}
+
+	/**
+	 * Reads a serialized completion context, or a serialized SST without its context.
+	 */
+	public static Context readContext(String json) {
+		String head = json.substring(0, Math.min(json.length(), 256));
+		if (head.contains("CompletionEvents.Context")) {
+			return JsonSerialization.fromJson(json, Context.class);
+		}
+		Context context = new Context();
+		context.setSST(JsonSerialization.fromJson(json, ISST.class));
+		return context;
+	}
+
+	private Path targetFile(Path file) {
+		String name = file.getFileName().toString();
+		String txt = name.substring(0, name.lastIndexOf('.')) + ".txt";
+		return _output.resolve(_input.relativize(file)).resolveSibling(txt);
+	}
+
+	private static boolean isArchive(Path file) {
+		return Files.isRegularFile(file) && file.toString().endsWith(".zip");
+	}
+
+	private static boolean isJson(Path file) {
+		return Files.isRegularFile(file) && file.toString().endsWith(".json");
+	}
+
+	private static long size(Path file) {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+}
@@ -16,6 +16,8 @@ package data.loader.sst;
  * limitations under the License.
  */
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -51,22 +53,211 @@ public class SSTPrintingContextExtended {
 	/// </summary>
 	public Iterator<INamespaceName> SeenNamespaces;
 
+	/// <summary>
+	/// Number of characters buffered before a sink-backed context hands them to
+	/// its sink.
+	/// </summary>
+	public static final int DEFAULT_SINK_BUFFER_SIZE = 8 * 1024;
+
+	private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+	// tokens printed beyond twice the left window before it is trimmed
+	private static final int TRIM_SLACK = 256;
+
 	private StringBuilder _sb;
 	private Set<INamespaceName> _seenNamespaces;
 
+	private final TokenSink _sink;
+	private final char[] _sinkBuffer;
+	private long _flushedChars;
+
+	private int _tokenCount;
+	private boolean _inToken;
+	private CursorPosition _cursor;
+	private boolean _printCursorMarker = true;
+
+	private int _leftWindow = -1;
+	private int _rightWindow = -1;
+	private boolean _leftTrimmed;
+	private boolean _windowExhausted;
+	private int _trimCount;
+
+	private TypeNameCache _typeNames;
+
 	public SSTPrintingContextExtended() {
 			_sb = new StringBuilder();
 			_seenNamespaces = new HashSet<INamespaceName>();
+			_sink = null;
+			_sinkBuffer = null;
 		}
 
+	/// <summary>
+	/// Creates a context that streams its output to the given sink instead of
+	/// collecting it in memory. About DEFAULT_SINK_BUFFER_SIZE characters are
+	/// buffered at a time, and at most that many are handed to the sink at
+	/// once; a single longer text, e.g. a long string literal, is buffered
+	/// in full before it is handed over in chunks. Call flush() once the SST
+	/// has been printed.
+	/// </summary>
+	/// <param name="sink">The sink that receives the printed characters.</param>
+	public SSTPrintingContextExtended(TokenSink sink) {
+		this(sink, DEFAULT_SINK_BUFFER_SIZE);
+	}
+
+	public SSTPrintingContextExtended(TokenSink sink, int bufferSize) {
+		_sb = new StringBuilder(bufferSize + 64);
+		_seenNamespaces = new HashSet<INamespaceName>();
+		_sink = sink;
+		_sinkBuffer = new char[bufferSize + 64];
+	}
+
 	/// <summary>
 	/// appends a String to the context.
 	/// </summary>
 	/// <param name="text">The String to append.</param>
 	/// <returns>The context after appending.</returns>
 	public SSTPrintingContextExtended text(String text) {
-		_sb.append("\t" + text.trim());
-		return this;
+		separator('\t');
+		appendTrimmed(text, -1);
+		return spill();
+	}
+
+	/// <summary>
+	/// appends a String that contains the cursor position to the context.
+	/// </summary>
+	/// <param name="text">The String to append.</param>
+	/// <param name="cursorOffset">The offset of the cursor in the String.</param>
+	/// <returns>The context after appending.</returns>
+	SSTPrintingContextExtended text(String text, int cursorOffset) {
+		separator('\t');
+		appendTrimmed(text, cursorOffset);
+		return spill();
+	}
+
+	/// <summary>
+	/// appends the output of another context as one token, i.e., preceded by a
+	/// separator and without leading and trailing whitespace.
+	/// </summary>
+	/// <param name="printed">An in-memory context holding the output.</param>
+	/// <returns>The context after appending.</returns>
+	SSTPrintingContextExtended text(SSTPrintingContextExtended printed) {
+		separator('\t');
+		appendTrimmed(printed._sb, printed._cursor != null ? (int) printed._cursor.getCharOffset() : -1);
+		return spill();
+	}
+
+	/// <summary>
+	/// appends the given characters without leading and trailing whitespace,
+	/// using the same definition of whitespace as String.trim(). No trimmed
+	/// copy is created. If cursorOffset is not negative, the cursor position is
+	/// recorded at that offset of the text.
+	/// </summary>
+	private void appendTrimmed(CharSequence text, int cursorOffset) {
+		if (_windowExhausted) {
+			return;
+		}
+		int start = 0;
+		int end = text.length();
+		while (start < end && text.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && text.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		int cursor = cursorOffset < 0 ? -1 : Math.min(Math.max(cursorOffset, start), end);
+		int offset = _sb.length() - start;
+		for (int i = start; i < end; i++) {
+			if (i == cursor) {
+				markCursor(offset + i);
+			}
+			if (!count(text.charAt(i))) {
+				end = i;
+				break;
+			}
+		}
+		if (cursor == end) {
+			markCursor(offset + end);
+		}
+		_sb.append(text, start, end);
+	}
+
+	/// <summary>
+	/// appends output printed before, unchanged.
+	/// </summary>
+	/// <param name="printed">The output to append.</param>
+	/// <returns>The context after appending.</returns>
+	SSTPrintingContextExtended append(String printed) {
+		appendRaw(printed, -1);
+		return spill();
+	}
+
+	/// <summary>
+	/// appends the output of another context, unchanged, including its cursor
+	/// position.
+	/// </summary>
+	/// <param name="printed">An in-memory context holding the output.</param>
+	/// <returns>The context after appending.</returns>
+	SSTPrintingContextExtended append(SSTPrintingContextExtended printed) {
+		appendRaw(printed._sb, printed._cursor != null ? (int) printed._cursor.getCharOffset() : -1);
+		return spill();
+	}
+
+	private void appendRaw(CharSequence text, int cursorOffset) {
+		if (_windowExhausted) {
+			return;
+		}
+		int offset = _sb.length();
+		int end = text.length();
+		for (int i = 0; i < end; i++) {
+			if (i == cursorOffset) {
+				markCursor(offset + i);
+			}
+			if (!count(text.charAt(i))) {
+				end = i;
+				break;
+			}
+		}
+		if (cursorOffset == end) {
+			markCursor(offset + cursorOffset);
+		}
+		_sb.append(text, 0, end);
+	}
+
+	private void separator(char separator) {
+		if (_windowExhausted) {
+			return;
+		}
+		_sb.append(separator);
+		_inToken = false;
+	}
+
+	/// <summary>
+	/// Keeps track of the number of tokens, i.e., of the runs of characters
+	/// between tabs and line breaks. Returns false, and marks the window as
+	/// exhausted, if the character would start a token beyond the right
+	/// window.
+	/// </summary>
+	private boolean count(char c) {
+		if (c == '\t' || c == '\n') {
+			_inToken = false;
+		} else if (!_inToken) {
+			if (_cursor != null && _rightWindow >= 0 && _tokenCount > _cursor.getTokenIndex() + _rightWindow) {
+				_windowExhausted = true;
+				return false;
+			}
+			_inToken = true;
+			_tokenCount++;
+		}
+		return true;
+	}
+
+	private void markCursor(int bufferOffset) {
+		if (_cursor == null) {
+			_cursor = new CursorPosition(_inToken ? _tokenCount - 1 : _tokenCount, _flushedChars + bufferOffset);
+			if (_sink != null) {
+				_sink.cursor(_cursor.getCharOffset());
+			}
+		}
 	}
 
 	public int getIndentationLevel() {
@@ -107,8 +298,8 @@ public class SSTPrintingContextExtended {
 	/// </summary>
 	/// <returns>The context after appending.</returns>
 	public SSTPrintingContextExtended newLine() {
-		_sb.append("\n");
-		return this;
+		separator('\n');
+		return spill();
 	}
 
 	/// <summary>
@@ -116,8 +307,8 @@ public class SSTPrintingContextExtended {
 	/// </summary>
 	/// <returns>The context after appending.</returns>
 	public SSTPrintingContextExtended space() {
-		_sb.append("\t");
-		return this;
+		separator('\t');
+		return spill();
 	}
 
 	/// <summary>
@@ -128,9 +319,9 @@ public class SSTPrintingContextExtended {
 	/// <returns>The context after appending.</returns>
 	public SSTPrintingContextExtended indentation() {
 		for (int i = 0; i < indentationLevel; i++) {
-			_sb.append("\t");
+			separator('\t');
 		}
-		return this;
+		return spill();
 	}
 
 	/// <summary>
@@ -143,13 +334,98 @@ public class SSTPrintingContextExtended {
 	}
 
 	/// <summary>
-	/// appends a marker for the current cursor position to the context.
+	/// appends a marker for the current cursor position to the context and
+	/// records the position, see getCursorPosition().
 	/// </summary>
 	/// <returns>The context after appending.</returns>
 	public SSTPrintingContextExtended cursorPosition() {
-		// Note: no tab before cursor!
-		_sb.append("!!");
-		return this;
+		markCursor(_sb.length());
+		if (_printCursorMarker) {
+			// Note: no tab before cursor!
+			appendRaw("!!", -1);
+		}
+		return spill();
+	}
+
+	/// <summary>
+	/// Returns the position recorded by the first call to cursorPosition(), or
+	/// null if the cursor has not been printed.
+	/// </summary>
+	public CursorPosition getCursorPosition() {
+		return _cursor;
+	}
+
+	/// <summary>
+	/// Returns the number of tokens printed so far.
+	/// </summary>
+	public int getTokenCount() {
+		return _tokenCount;
+	}
+
+	/// <summary>
+	/// Limits the output to a window around the cursor: at most leftWindow
+	/// tokens before the token of the cursor, and at most rightWindow tokens
+	/// after it. Output left of the window is discarded while printing, so
+	/// that the output holds at most about twice the left window until the
+	/// cursor is printed; once the right window is used up, all further output
+	/// is suppressed (see isWindowExhausted()). The recorded cursor position
+	/// refers to the windowed output. A negative value does not limit that
+	/// side. Only in-memory contexts can be windowed, and only SSTs that
+	/// contain the cursor should be printed windowed, since otherwise only the
+	/// last tokens remain.
+	/// </summary>
+	public void setWindow(int leftWindow, int rightWindow) {
+		if (_sink != null && (leftWindow >= 0 || rightWindow >= 0)) {
+			throw new IllegalStateException("sink-backed contexts cannot be windowed");
+		}
+		_leftWindow = leftWindow;
+		_rightWindow = rightWindow;
+	}
+
+	public int getLeftWindow() {
+		return _leftWindow;
+	}
+
+	public int getRightWindow() {
+		return _rightWindow;
+	}
+
+	public boolean isWindowed() {
+		return _leftWindow >= 0 || _rightWindow >= 0;
+	}
+
+	/// <summary>
+	/// Returns whether the right window has been used up, so that nothing
+	/// more will be printed. Visitors should stop walking the SST then.
+	/// </summary>
+	public boolean isWindowExhausted() {
+		return _windowExhausted;
+	}
+
+	public TypeNameCache getTypeNameCache() {
+		return _typeNames;
+	}
+
+	/// <summary>
+	/// Sets a cache for the output of type(ITypeName), shared between contexts
+	/// that render type names the same way. Type names equal to one rendered
+	/// before are then appended in one piece from the cache instead of being
+	/// rendered again. Null disables caching.
+	/// </summary>
+	public void setTypeNameCache(TypeNameCache typeNames) {
+		_typeNames = typeNames;
+	}
+
+	public boolean isPrintCursorMarker() {
+		return _printCursorMarker;
+	}
+
+	/// <summary>
+	/// Sets whether cursorPosition() appends the "!!" marker to the output. The
+	/// position is recorded either way.
+	/// </summary>
+	public void setPrintCursorMarker(boolean printCursorMarker) {
+		_printCursorMarker = printCursorMarker;
 	}
 
 	/// <summary>
@@ -208,7 +484,26 @@ public class SSTPrintingContextExtended {
 	/// <param name="typeName">The type name to append.</param>
 	/// <returns>The context after appending.</returns>
 	public SSTPrintingContextExtended type(ITypeName typeName) {
+		if (_typeNames == null || typeName == null) {
+			return renderType(typeName);
+		}
+		String rendered = _typeNames.get(typeName);
+		if (rendered != null) {
+			appendRaw(rendered, -1);
+			return spill();
+		}
+		int start = _sb.length();
+		long flushedChars = _flushedChars;
+		int trimCount = _trimCount;
+		renderType(typeName);
+		// only complete renderings that are still in the buffer can be cached
+		if (!_windowExhausted && _flushedChars == flushedChars && _trimCount == trimCount) {
+			_typeNames.put(typeName, _sb.substring(start));
+		}
+		return this;
+	}
 
+	private SSTPrintingContextExtended renderType(ITypeName typeName) {
 		typeNameOnly(typeName);
 
 		if (typeName != null && typeName.hasTypeParameters()) {
@@ -225,7 +520,8 @@ public class SSTPrintingContextExtended {
 		for (ITypeParameterName tpn : tpns) {
 
 			if (!isFirst) {
-				_sb.append("\t,");
+				separator('\t');
+				appendRaw(",", -1);
 			}
 			isFirst = false;
 
@@ -234,7 +530,8 @@ public class SSTPrintingContextExtended {
 			} else if (tpn.isBound()) {
 				type(tpn.getTypeParameterType());
 			} else {
-				_sb.append("\t" + tpn.getTypeParameterShortName());
+				separator('\t');
+				appendRaw(String.valueOf(tpn.getTypeParameterShortName()), -1);
 			}
 		}
 
@@ -305,6 +602,9 @@ public class SSTPrintingContextExtended {
 		indentationLevel++;
 
 		for (IStatement statement : block) {
+			if (_windowExhausted) {
+				break;
+			}
 			newLine();
 			statement.accept(visitor, this);
 		}
@@ -318,6 +618,187 @@ public class SSTPrintingContextExtended {
 		return this;
 	}
 
+	/// <summary>
+	/// Writes all buffered output to the sink and flushes the sink. Has no
+	/// effect on contexts that collect their output in memory.
+	/// </summary>
+	/// <returns>The context after flushing.</returns>
+	public SSTPrintingContextExtended flush() {
+		if (_sink != null) {
+			drain(_sb.length());
+			try {
+				_sink.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return this;
+	}
+
+	/// <summary>
+	/// Hands the output of an in-memory context to the given sink, e.g. to
+	/// count or number its tokens, and flushes the sink. The sink reads the
+	/// buffer directly, so no copy of the output is created.
+	/// </summary>
+	/// <param name="sink">The sink that receives the printed characters.</param>
+	public void writeTo(TokenizingSink sink) {
+		if (_sink != null) {
+			throw new IllegalStateException("the output of a sink-backed context is not held in memory");
+		}
+		try {
+			sink.write(_sb, 0, _sb.length());
+			sink.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private SSTPrintingContextExtended spill() {
+		if (_leftWindow >= 0 && !_leftTrimmed) {
+			trimLeft();
+		}
+		if (_sink != null && _sb.length() >= _sinkBuffer.length - 64) {
+			int length = _sb.length();
+			// never split a surrogate pair between two chunks
+			if (Character.isHighSurrogate(_sb.charAt(length - 1))) {
+				length--;
+			}
+			drain(length);
+		}
+		return this;
+	}
+
+	/// <summary>
+	/// Discards the output left of the window: before the cursor is printed,
+	/// all but the last leftWindow + 1 tokens (the last one may still turn out
+	/// to be the token of the cursor), once the output has grown well beyond
+	/// that; when the cursor has been printed, everything before the
+	/// leftWindow tokens preceding it, once.
+	/// </summary>
+	private void trimLeft() {
+		int keepFrom;
+		if (_cursor == null) {
+			if (_tokenCount <= 2 * (_leftWindow + 1) + TRIM_SLACK) {
+				return;
+			}
+			keepFrom = _tokenCount - _leftWindow - 1;
+		} else {
+			_leftTrimmed = true;
+			keepFrom = _cursor.getTokenIndex() - _leftWindow;
+			if (keepFrom <= 0) {
+				return;
+			}
+		}
+		int start = tokenStart(keepFrom);
+		_sb.delete(0, start);
+		_trimCount++;
+		_tokenCount -= keepFrom;
+		if (_cursor != null) {
+			_cursor = new CursorPosition(_cursor.getTokenIndex() - keepFrom, _cursor.getCharOffset() - start);
+		}
+	}
+
+	/// <summary>
+	/// Returns the offset of the token with the given index in the buffer.
+	/// </summary>
+	private int tokenStart(int index) {
+		int tokens = 0;
+		boolean inToken = false;
+		for (int i = 0; i < _sb.length(); i++) {
+			char c = _sb.charAt(i);
+			if (c == '\t' || c == '\n') {
+				inToken = false;
+			} else if (!inToken) {
+				if (tokens == index) {
+					return i;
+				}
+				inToken = true;
+				tokens++;
+			}
+		}
+		return _sb.length();
+	}
+
+	private void drain(int length) {
+		if (length == 0) {
+			return;
+		}
+		// in chunks of the sink buffer, so that a long text does not allocate a buffer of its length
+		try {
+			for (int start = 0; start < length;) {
+				int end = Math.min(length, start + _sinkBuffer.length);
+				if (end < length && Character.isHighSurrogate(_sb.charAt(end - 1))) {
+					end--;
+				}
+				_sb.getChars(start, end, _sinkBuffer, 0);
+				_sink.write(_sinkBuffer, 0, end - start);
+				start = end;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		_sb.delete(0, length);
+		_flushedChars += length;
+	}
+
+	/// <summary>
+	/// Clears the output, the recorded cursor position, the indentation level,
+	/// the type shape and the seen namespaces of an in-memory context, so that
+	/// it can be reused for printing another node. The window is kept.
+	/// </summary>
+	/// <returns>The context after resetting.</returns>
+	public SSTPrintingContextExtended reset() {
+		if (_sb.capacity() > MAX_RETAINED_CAPACITY) {
+			_sb = new StringBuilder();
+		} else {
+			_sb.setLength(0);
+		}
+		_seenNamespaces.clear();
+		indentationLevel = 0;
+		typeShape = null;
+		_flushedChars = 0;
+		_tokenCount = 0;
+		_inToken = false;
+		_cursor = null;
+		_leftTrimmed = false;
+		_windowExhausted = false;
+		return this;
+	}
+
+	/// <summary>
+	/// Returns the offset of the recorded cursor position in the output of
+	/// toTrimmedString(), or -1 if no cursor position has been recorded.
+	/// </summary>
+	int trimmedCursorOffset() {
+		if (_cursor == null) {
+			return -1;
+		}
+		int start = 0;
+		while (start < _sb.length() && _sb.charAt(start) <= ' ') {
+			start++;
+		}
+		return Math.max(0, (int) _cursor.getCharOffset() - start);
+	}
+
+	/// <summary>
+	/// Returns the printed output without leading and trailing whitespace.
+	/// </summary>
+	String toTrimmedString() {
+		int start = 0;
+		int end = _sb.length();
+		while (start < end && _sb.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && _sb.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return _sb.substring(start, end);
+	}
+
+	/// <summary>
+	/// Returns the printed output. For sink-backed contexts, only the part that
+	/// has not been handed to the sink yet is returned.
+	/// </summary>
 	public String toString() {
 		return _sb.toString();
 	}
@@ -15,12 +15,15 @@
  */
 package data.loader.sst;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import cc.kave.commons.model.naming.IName;
 import cc.kave.commons.model.naming.codeelements.IMethodName;
 import cc.kave.commons.model.naming.types.IDelegateTypeName;
 import cc.kave.commons.model.ssts.IMemberDeclaration;
@@ -86,9 +89,118 @@ import cc.kave.commons.model.typeshapes.ITypeHierarchy;
 
 public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTPrintingContextExtended, Void> {
 
-	private static final String PLACEHOLDER = "\\$[0-9]+";
+	private final TokenClassifier classifier;
+
+	private final ReferenceTable referenceTable = new ReferenceTable();
+
+	private final List<SSTPrintingContextExtended> scratchContexts = new ArrayList<>();
+	private int scratchDepth;
+
+	private MemberOutputCache memberCache;
+	private TypeHeaderCache typeHeaderCache;
+
+	// digests of the members of the SST printed last that are not lazy, by identity, so that printing the same SST
+	// again does not serialize them again
+	private final Map<IMemberDeclaration, long[]> memberDigests = new IdentityHashMap<>();
+	private ISST digestedSST;
+
+	// the re-inlined expression that contains the cursor, if any
+	private String cursorExpression;
+	private int cursorOffset;
+
+	public SSTPrintingVisitorExtended() {
+		this(new TokenClassifier());
+	}
+
+	public SSTPrintingVisitorExtended(TokenClassifier classifier) {
+		this.classifier = classifier;
+	}
+
+	public MemberOutputCache getMemberCache() {
+		return memberCache;
+	}
+
+	/**
+	 * Sets a cache for the printed output of member declarations. Members equal to one printed before are then
+	 * spliced in from the cache instead of being visited again; the member that contains the cursor is always
+	 * visited. Null disables caching. In a windowed context (see
+	 * {@link SSTPrintingContextExtended#setWindow(int, int)}), members after the cursor bypass the cache. Members that
+	 * are not lazy are keyed once per instance while the same SST is printed again, so an SST must not be changed
+	 * between two prints.
+	 */
+	public void setMemberCache(MemberOutputCache memberCache) {
+		this.memberCache = memberCache;
+	}
+
+	public TypeHeaderCache getTypeHeaderCache() {
+		return typeHeaderCache;
+	}
+
+	/**
+	 * Sets a cache for the printed type headers, i.e. the type kind, name and supertypes of an SST. The header of a
+	 * type printed before with the same supertypes is then spliced in from the cache, so that only the members are
+	 * printed for every SST. Null disables caching.
+	 */
+	public void setTypeHeaderCache(TypeHeaderCache typeHeaderCache) {
+		this.typeHeaderCache = typeHeaderCache;
+	}
+
 	@Override
 	public Void visit(ISST sst, SSTPrintingContextExtended context) {
+		if (sst != digestedSST) {
+			memberDigests.clear();
+			digestedSST = sst;
+		}
+		referenceTable.enterFrame();
+		try {
+			appendType(sst, context);
+		} finally {
+			referenceTable.exitFrame();
+			cursorExpression = null;
+		}
+		return null;
+	}
+
+	private Void appendType(ISST sst, SSTPrintingContextExtended context) {
+		appendTypeHeader(sst, context);
+
+		context.indentationLevel++;
+
+		appendMemberDeclarationGroup(context, sst.getDelegates(), 1, 2);
+		appendMemberDeclarationGroup(context, sst.getEvents(), 1, 2);
+		appendMemberDeclarationGroup(context, sst.getFields(), 1, 2);
+		appendMemberDeclarationGroup(context, sst.getProperties(), 1, 2);
+		appendMemberDeclarationGroup(context, sst.getMethods(), 2, 1);
+
+		context.indentationLevel--;
+
+		context.indentation().text("}");
+		return null;
+	}
+
+	private void appendTypeHeader(ISST sst, SSTPrintingContextExtended context) {
+		if (typeHeaderCache == null) {
+			printTypeHeader(sst, context);
+			return;
+		}
+		String cached = typeHeaderCache.get(sst.getEnclosingType(), context.typeShape, context.indentationLevel);
+		if (cached != null) {
+			context.append(cached);
+			return;
+		}
+		SSTPrintingContextExtended header = acquireScratchContext(context);
+		try {
+			header.indentationLevel = context.indentationLevel;
+			header.setTypeShape(context.typeShape);
+			printTypeHeader(sst, header);
+			typeHeaderCache.put(sst.getEnclosingType(), context.typeShape, context.indentationLevel, header.toString());
+			context.append(header);
+		} finally {
+			releaseScratchContext();
+		}
+	}
+
+	private void printTypeHeader(ISST sst, SSTPrintingContextExtended context) {
 		context.indentation();
 
 		if (sst.getEnclosingType().isInterfaceType()) {
@@ -125,28 +237,19 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 		}
 
 		context.newLine().indentation().text("{").newLine();
-
-		context.indentationLevel++;
-
-		appendMemberDeclarationGroup(context, sst.getDelegates(), 1, 2);
-		appendMemberDeclarationGroup(context, sst.getEvents(), 1, 2);
-		appendMemberDeclarationGroup(context, sst.getFields(), 1, 2);
-		appendMemberDeclarationGroup(context, sst.getProperties(), 1, 2);
-		appendMemberDeclarationGroup(context, sst.getMethods(), 2, 1);
-
-		context.indentationLevel--;
-
-		context.indentation().text("}");
-		return null;
 	}
 
 	private <T extends IMemberDeclaration> Void appendMemberDeclarationGroup(SSTPrintingContextExtended context,
 			Set<T> nodeGroup, int inBetweenNewLineCount, int trailingNewLineCount) {
 
-		List<T> nodeList = nodeGroup.stream().collect(Collectors.toList());
+		// hash sets iterate eagerly and lazily read members differently, so groups are printed ordered by name
+		List<T> nodeList = nodeGroup.stream().sorted(MEMBER_ORDER).collect(Collectors.toList());
 		for (int i = 0; i < nodeList.size(); i++) {
+			if (context.isWindowExhausted()) {
+				break;
+			}
 			T node = nodeList.get(i);
-			node.accept(this, context);
+			appendMemberDeclaration(context, node);
 
 			int newLinesNeeded = (i < (nodeList.size() - 1) ? inBetweenNewLineCount : trailingNewLineCount);
 
@@ -157,6 +260,76 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 		return null;
 	}
 
+	/**
+	 * Orders the members of a group by the identifier of their name, and members with equal names by the hash code of
+	 * the declaration, whether they were read lazily (see {@link LazySSTReader}) or not.
+	 */
+	private static final Comparator<IMemberDeclaration> MEMBER_ORDER = Comparator
+			.comparing(SSTPrintingVisitorExtended::memberName)
+			.thenComparingInt(LazySSTReader::hashCodeOfDeclaration);
+
+	private static String memberName(IMemberDeclaration member) {
+		IName name;
+		if (member instanceof IMethodDeclaration) {
+			name = ((IMethodDeclaration) member).getName();
+		} else if (member instanceof IPropertyDeclaration) {
+			name = ((IPropertyDeclaration) member).getName();
+		} else if (member instanceof IFieldDeclaration) {
+			name = ((IFieldDeclaration) member).getName();
+		} else if (member instanceof IEventDeclaration) {
+			name = ((IEventDeclaration) member).getName();
+		} else if (member instanceof IDelegateDeclaration) {
+			name = ((IDelegateDeclaration) member).getName();
+		} else {
+			name = null;
+		}
+		return name != null ? name.getIdentifier() : "";
+	}
+
+	/**
+	 * Returns the digest of a member for the member cache: read from a lazy member, else serialized once per instance
+	 * while the same SST is printed.
+	 */
+	private long[] memberDigest(IMemberDeclaration member) {
+		long[] digest = LazySSTReader.digest(member);
+		if (digest == null) {
+			digest = memberDigests.get(member);
+			if (digest == null) {
+				digest = MemberOutputCache.serializedDigest(member);
+				memberDigests.put(member, digest);
+			}
+		}
+		return digest;
+	}
+
+	private Void appendMemberDeclaration(SSTPrintingContextExtended context, IMemberDeclaration node) {
+		// past the cursor of a windowed context, print directly so that printing stops with the window
+		if (memberCache == null || (context.isWindowed() && context.getCursorPosition() != null)) {
+			node.accept(this, context);
+			return null;
+		}
+		MemberOutputCache.Key key = MemberOutputCache.key(memberDigest(node), context.indentationLevel);
+		String cached = memberCache.get(key);
+		if (cached != null) {
+			context.append(cached);
+			return null;
+		}
+		SSTPrintingContextExtended member = acquireScratchContext(context);
+		try {
+			member.indentationLevel = context.indentationLevel;
+			// members without the cursor are printed in full, so they can be cached
+			member.setWindow(-1, context.getRightWindow());
+			node.accept(this, member);
+			if (member.getCursorPosition() == null) {
+				memberCache.put(key, member.toString());
+			}
+			context.append(member);
+		} finally {
+			releaseScratchContext();
+		}
+		return null;
+	}
+
 	@Override
 	public Void visit(IDelegateDeclaration stmt, SSTPrintingContextExtended context) {
 		context.indentation().keyword("delegate").space().type(stmt.getName())
@@ -198,7 +371,12 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 
 		context.parameterList(stmt.getName().getParameters());
 
-		context.statementBlock(stmt.getBody(), this, true);
+		referenceTable.enterFrame();
+		try {
+			appendBody(context, stmt.getBody());
+		} finally {
+			referenceTable.exitFrame();
+		}
 		return null;
 	}
 
@@ -246,7 +424,12 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 	private Void appendPropertyAccessor(SSTPrintingContextExtended context, List<IStatement> body, String keyword) {
 		if (!body.isEmpty()) {
 			context.indentation().text(keyword);
-			context.statementBlock(body, this, true);
+			referenceTable.enterFrame();
+			try {
+				appendBody(context, body);
+			} finally {
+				referenceTable.exitFrame();
+			}
 		} else {
 			context.indentation().text(keyword).text(";");
 		}
@@ -255,12 +438,11 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 		return null;
 	}
 
-	private Map<String, String> referenceMapping = new HashMap<>();
 	@Override
 	public Void visit(IVariableDeclaration stmt, SSTPrintingContextExtended context) {
 		IVariableReference reference = stmt.getReference();
 		String id = reference.getIdentifier();
-		if (id.matches(PLACEHOLDER)) return null;
+		if (TokenClassifier.isPlaceholder(id)) return null;
 
 		context.indentation().type(stmt.getType()).space();
 		reference.accept(this, context);
@@ -270,13 +452,24 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 
 	@Override
 	public Void visit(IAssignment stmt, SSTPrintingContextExtended context) {
-		SSTPrintingContextExtended lhs = new SSTPrintingContextExtended();
-		stmt.getReference().accept(this, lhs);
-		String reference = lhs.toString().trim();
-		if (reference.matches(PLACEHOLDER)) {
-			SSTPrintingContextExtended rhs = new SSTPrintingContextExtended();
-			stmt.getExpression().accept(this, rhs);
-			this.referenceMapping.put(reference, rhs.toString().trim());
+		// only variable references can print as a placeholder
+		String reference = null;
+		if (stmt.getReference() instanceof IVariableReference) {
+			reference = inline(((IVariableReference) stmt.getReference()).getIdentifier()).trim();
+		}
+		if (reference != null && TokenClassifier.isPlaceholder(reference)) {
+			SSTPrintingContextExtended rhs = acquireScratchContext(context);
+			try {
+				stmt.getExpression().accept(this, rhs);
+				String expression = rhs.toTrimmedString();
+				referenceTable.put(reference, expression);
+				if (rhs.getCursorPosition() != null) {
+					cursorExpression = expression;
+					cursorOffset = rhs.trimmedCursorOffset();
+				}
+			} finally {
+				releaseScratchContext();
+			}
 		}
 		else {
 			context.indentation();
@@ -288,6 +481,47 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 		return null;
 	}
 
+	/**
+	 * Appends the body of a method, property accessor, lambda or loop header in brackets. All nested statements are
+	 * printed from here; subclasses may traverse them differently, e.g. without recursion.
+	 */
+	protected void appendBody(SSTPrintingContextExtended context, List<IStatement> body) {
+		context.statementBlock(body, this, true);
+	}
+
+	// scratch contexts are pooled per nesting depth and must be released in
+	// reverse order
+	private SSTPrintingContextExtended acquireScratchContext(SSTPrintingContextExtended context) {
+		if (scratchDepth == scratchContexts.size()) {
+			scratchContexts.add(new SSTPrintingContextExtended());
+		}
+		SSTPrintingContextExtended scratch = scratchContexts.get(scratchDepth++).reset();
+		scratch.setPrintCursorMarker(context.isPrintCursorMarker());
+		scratch.setTypeNameCache(context.getTypeNameCache());
+		scratch.setWindow(-1, -1);
+		return scratch;
+	}
+
+	private void releaseScratchContext() {
+		scratchDepth--;
+	}
+
+	private String inline(String id) {
+		String expression = referenceTable.get(id);
+		return expression != null ? expression : id;
+	}
+
+	private void appendIdentifier(SSTPrintingContextExtended context, String id) {
+		String expression = referenceTable.get(id);
+		if (expression == null) {
+			context.text(id);
+		} else if (expression == cursorExpression) {
+			context.text(expression, cursorOffset);
+		} else {
+			context.text(expression);
+		}
+	}
+
 	@Override
 	public Void visit(IBreakStatement stmt, SSTPrintingContextExtended context) {
 		context.indentation().keyword("break").text(";");
@@ -336,10 +570,9 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 
 	@Override
 	public Void visit(IThrowStatement stmt, SSTPrintingContextExtended context) {
-		String id = stmt.getReference().getIdentifier();
-		id = this.referenceMapping.getOrDefault(id, id);
-		context.indentation().keyword("throw").space().keyword("new").space().text(id)
-				.text("();");
+		context.indentation().keyword("throw").space().keyword("new").space();
+		appendIdentifier(context, stmt.getReference().getIdentifier());
+		context.text("();");
 		return null;
 	}
 
@@ -502,9 +735,8 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 	public Void visit(ICompletionExpression entity, SSTPrintingContextExtended context) {
 		IVariableReference objectReference = entity.getVariableReference();
 		if (objectReference != null) {
-			String id = objectReference.getIdentifier();
-			id = this.referenceMapping.getOrDefault(id, id);
-			context.text(id).text(".");
+			appendIdentifier(context, objectReference.getIdentifier());
+			context.text(".");
 		} else if (entity.getTypeReference() != null) {
 			context.type(entity.getTypeReference()).text(".");
 		}
@@ -574,13 +806,18 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 	@Override
 	public Void visit(ILambdaExpression expr, SSTPrintingContextExtended context) {
 		context.parameterList(expr.getName().getParameters()).space().text("=>");
-		context.statementBlock(expr.getBody(), this, true);
+		referenceTable.enterFrame();
+		try {
+			appendBody(context, expr.getBody());
+		} finally {
+			referenceTable.exitFrame();
+		}
 		return null;
 	}
 
 	@Override
 	public Void visit(ILoopHeaderBlockExpression expr, SSTPrintingContextExtended context) {
-		context.statementBlock(expr.getBody(), this, true);
+		appendBody(context, expr.getBody());
 		return null;
 	}
 
@@ -591,9 +828,11 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 			String value = !value2.isEmpty() ? value2 : "...";
 
 			// Double.TryParse(expr.Value, out parsed
-			if (value.equals("false") || value.equals("true") || value.matches("[0-9]+")
-					|| value.matches("[0-9]+\\.[0-9]+")) {
+			TokenClassifier.Kind kind = TokenClassifier.classify(value);
+			if (kind == TokenClassifier.Kind.BOOLEAN) {
 				context.keyword(value);
+			} else if (kind == TokenClassifier.Kind.INTEGER || kind == TokenClassifier.Kind.DECIMAL) {
+				context.keyword(classifier.numberLiteral(value, kind));
 			} else {
 				context.stringLiteral(value);
 			}
@@ -609,19 +848,26 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 
 	@Override
 	public Void visit(IReferenceExpression expr, SSTPrintingContextExtended context) {
-		SSTPrintingContextExtended tempContext = new SSTPrintingContextExtended();
-		expr.getReference().accept(this, tempContext);
-		String id = tempContext.toString();
-		id = this.referenceMapping.getOrDefault(id, id);
-		context.text(id);
+		IReference reference = expr.getReference();
+		if (reference instanceof IVariableReference) {
+			// a variable prints as a single token already
+			reference.accept(this, context);
+			return null;
+		}
+		SSTPrintingContextExtended tempContext = acquireScratchContext(context);
+		try {
+			reference.accept(this, tempContext);
+			context.text(tempContext);
+		} finally {
+			releaseScratchContext();
+		}
 		return null;
 	}
 
 	@Override
 	public Void visit(IEventReference eventRef, SSTPrintingContextExtended context) {
 		String id = eventRef.getReference().getIdentifier();
-		id = this.referenceMapping.getOrDefault(id, id);
-		context.text(id);
+		appendIdentifier(context, id);
 		context.text(".");
 		context.text(eventRef.getEventName().getName());
 		return null;
@@ -630,8 +876,7 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 	@Override
 	public Void visit(IFieldReference fieldRef, SSTPrintingContextExtended context) {
 		String id = fieldRef.getReference().getIdentifier();
-		id = this.referenceMapping.getOrDefault(id, id);
-		context.text(id);
+		appendIdentifier(context, id);
 		context.text(".");
 		context.text(fieldRef.getFieldName().getName());
 		return null;
@@ -640,8 +885,7 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 	@Override
 	public Void visit(IMethodReference methodRef, SSTPrintingContextExtended context) {
 		String id = methodRef.getReference().getIdentifier();
-		id = this.referenceMapping.getOrDefault(id, id);
-		context.text(id);
+		appendIdentifier(context, id);
 		context.text(".");
 		context.text(methodRef.getMethodName().getName());
 		return null;
@@ -650,8 +894,7 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 	@Override
 	public Void visit(IPropertyReference propertyRef, SSTPrintingContextExtended context) {
 		String id = propertyRef.getReference().getIdentifier();
-		id = this.referenceMapping.getOrDefault(id, id);
-		context.text(id);
+		appendIdentifier(context, id);
 		context.text(".");
 		context.text(propertyRef.getPropertyName().getName());
 		return null;
@@ -660,8 +903,7 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 	@Override
 	public Void visit(IVariableReference varRef, SSTPrintingContextExtended context) {
 		String id = varRef.getIdentifier();
-		id = this.referenceMapping.getOrDefault(id, id);
-		context.text(id);
+		appendIdentifier(context, id);
 		return null;
 	}
 
@@ -693,15 +935,13 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 	public Void visit(ICastExpression expr, SSTPrintingContextExtended context) {
 		if (expr.getOperator() == CastOperator.SafeCast) {
 			String id = expr.getReference().getIdentifier();
-			id = this.referenceMapping.getOrDefault(id, id);
-			context.text(id);
+			appendIdentifier(context, id);
 			context.text(" as ");
 			context.text(expr.getTargetType().getName());
 		} else {
 			context.text("(" + expr.getTargetType().getName() + ") ");
 			String id = expr.getReference().getIdentifier();
-			id = this.referenceMapping.getOrDefault(id, id);
-			context.text(id);
+			appendIdentifier(context, id);
 		}
 		return null;
 	}
@@ -709,8 +949,7 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 	@Override
 	public Void visit(ITypeCheckExpression expr, SSTPrintingContextExtended context) {
 		String id = expr.getReference().getIdentifier();
-		id = this.referenceMapping.getOrDefault(id, id);
-		context.text(id);
+		appendIdentifier(context, id);
 		context.text(" instanceof ");
 		context.text(expr.getType().getName());
 		return null;
@@ -719,8 +958,7 @@ public class SSTPrintingVisitorExtended extends AbstractThrowingNodeVisitor<SSTP
 	@Override
 	public Void visit(IIndexAccessExpression expr, SSTPrintingContextExtended context) {
 		String id = expr.getReference().getIdentifier();
-		id = this.referenceMapping.getOrDefault(id, id);
-		context.text(id);
+		appendIdentifier(context, id);
 		context.text("[");
 		for (int i = 0; i < expr.getIndices().size(); i++) {
 			expr.getIndices().get(i).accept(this, context);
@@ -0,0 +1,113 @@
+package data.loader.sst;
+
+/**
+ * Single-pass classification of printed identifiers and literals, and the abstraction applied to numeric literals.
+ * Replaces the regular expressions the printer used to match "$N" placeholders and numbers.
+ */
+public class TokenClassifier {
+
+	public enum Kind {
+		/** "$" followed by one or more digits */
+		PLACEHOLDER,
+		/** "true" or "false" */
+		BOOLEAN,
+		/** one or more digits */
+		INTEGER,
+		/** one or more digits, ".", one or more digits */
+		DECIMAL,
+		OTHER
+	}
+
+	/**
+	 * How numeric literals are printed. Booleans are always kept; strings are always printed as "str".
+	 */
+	public enum LiteralPolicy {
+		/** numbers are printed as they are */
+		KEEP,
+		/**
+		 * single-digit integers are kept, longer integers become "num" plus their number of digits (up to "num10"),
+		 * decimals become "dec"
+		 */
+		BUCKET,
+		/** all numbers are printed as "num" */
+		ABSTRACT
+	}
+
+	private static final String[] INTEGER_BUCKETS = { null, null, "num2", "num3", "num4", "num5", "num6", "num7",
+			"num8", "num9", "num10" };
+
+	private final LiteralPolicy _policy;
+
+	public TokenClassifier() {
+		this(LiteralPolicy.KEEP);
+	}
+
+	public TokenClassifier(LiteralPolicy policy) {
+		_policy = policy;
+	}
+
+	public LiteralPolicy getPolicy() {
+		return _policy;
+	}
+
+	public static boolean isPlaceholder(CharSequence token) {
+		return classify(token) == Kind.PLACEHOLDER;
+	}
+
+	public static Kind classify(CharSequence token) {
+		int length = token.length();
+		if (length == 0) {
+			return Kind.OTHER;
+		}
+		char first = token.charAt(0);
+		if (first == '$') {
+			return length > 1 && skipDigits(token, 1) == length ? Kind.PLACEHOLDER : Kind.OTHER;
+		}
+		if (isDigit(first)) {
+			int i = skipDigits(token, 1);
+			if (i == length) {
+				return Kind.INTEGER;
+			}
+			if (token.charAt(i) != '.' || i + 1 == length) {
+				return Kind.OTHER;
+			}
+			return skipDigits(token, i + 1) == length ? Kind.DECIMAL : Kind.OTHER;
+		}
+		if (first == 't' && length == 4 && "true".contentEquals(token)) {
+			return Kind.BOOLEAN;
+		}
+		if (first == 'f' && length == 5 && "false".contentEquals(token)) {
+			return Kind.BOOLEAN;
+		}
+		return Kind.OTHER;
+	}
+
+	/**
+	 * Returns the token to print for a numeric literal of the given kind, according to the literal policy.
+	 */
+	public String numberLiteral(String value, Kind kind) {
+		switch (_policy) {
+		case ABSTRACT:
+			return "num";
+		case BUCKET:
+			if (kind == Kind.DECIMAL) {
+				return "dec";
+			}
+			return value.length() < 2 ? value : INTEGER_BUCKETS[Math.min(value.length(), INTEGER_BUCKETS.length - 1)];
+		default:
+			return value;
+		}
+	}
+
+	private static int skipDigits(CharSequence token, int from) {
+		int i = from;
+		while (i < token.length() && isDigit(token.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
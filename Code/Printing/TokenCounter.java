@@ -0,0 +1,309 @@
+package data.loader.sst;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe token frequency counts, from which a frequency-sorted vocabulary with open-vocabulary cutoffs is built.
+ * The counts are striped by token hash, so threads adding different tokens rarely contend for the same lock; threads
+ * usually count through a {@link TokenCountingSink}, which batches its counts before adding them.
+ * <p>
+ * To bound the memory of the counts, a {@link CountMinSketch} of a previous pass over the same tokens can be set as a
+ * filter: tokens whose estimated count is below the minimum count are then not counted at all. The sketch never
+ * underestimates, so no token that reaches the minimum count is dropped.
+ */
+public class TokenCounter {
+
+	/** The token in place of all tokens below the cutoffs, always ID 0 of a built vocabulary. */
+	public static final String UNKNOWN = "<unk>";
+
+	public static final int DEFAULT_STRIPES = 64;
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final Stripe[] _stripes;
+	private CountMinSketch _filter;
+	private long _filterCount;
+
+	private static class Stripe {
+		private final Map<String, long[]> _counts = new HashMap<>();
+	}
+
+	public TokenCounter() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param stripes
+	 *            the number of independently locked parts of the counts, a power of two
+	 */
+	public TokenCounter(int stripes) {
+		if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+			throw new IllegalArgumentException("invalid number of stripes " + stripes);
+		}
+		_stripes = new Stripe[stripes];
+		for (int i = 0; i < stripes; i++) {
+			_stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Counts plain-text data in parallel: a file, or all files below a directory, with one file of tab-separated
+	 * tokens per line. With a minimum count above 1, a count-min sketch pre-pass over the data first rules out rare
+	 * tokens. The dictionary is written in the format of {@link #write(Writer, long, int)}.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println(
+					"usage: TokenCounter <text file or dir> <dictionary file> [threads] [min count] [max size]");
+			System.exit(1);
+		}
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long minCount = args.length > 3 ? Long.parseLong(args[3]) : 1;
+		int maxSize = args.length > 4 ? Integer.parseInt(args[4]) : Integer.MAX_VALUE;
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(Paths.get(args[0]))) {
+			files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+		long start = System.nanoTime();
+		TokenCounter counter = count(new ForkJoinPool(threads), files, minCount);
+		try (Writer out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+			counter.write(out, minCount, maxSize);
+		}
+		System.out.printf("%d tokens, %d token types counted in %.1f s%n", counter.getTokenCount(), counter.size(),
+				(System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Counts the tokens of plain-text files in parallel, with one line of tab-separated tokens per SST. With a minimum
+	 * count above 1, a count-min sketch pre-pass over the files first rules out rare tokens, so that only the tokens
+	 * that may reach the minimum count are counted exactly.
+	 */
+	public static TokenCounter count(ForkJoinPool pool, List<Path> files, long minCount) {
+		TokenCounter counter = new TokenCounter();
+		if (minCount > 1) {
+			CountMinSketch sketch = new CountMinSketch();
+			for (TokenCountingSink sink : countAll(pool, files, () -> new TokenCountingSink(new CountMinSketch()))) {
+				sketch.add(sink.getSketch());
+			}
+			counter.setFilter(sketch, minCount);
+		}
+		countAll(pool, files, () -> new TokenCountingSink(counter));
+		return counter;
+	}
+
+	/**
+	 * Feeds all lines of the files to per-thread sinks, and returns the drained sinks.
+	 */
+	private static List<TokenCountingSink> countAll(ForkJoinPool pool, List<Path> files,
+			Supplier<TokenCountingSink> sinks) {
+		List<TokenCountingSink> all = Collections.synchronizedList(new ArrayList<>());
+		ThreadLocal<TokenCountingSink> local = ThreadLocal.withInitial(() -> {
+			TokenCountingSink sink = sinks.get();
+			all.add(sink);
+			return sink;
+		});
+		pool.submit(() -> files.parallelStream().forEach(file -> {
+			TokenCountingSink sink = local.get();
+			try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					char[] chars = line.toCharArray();
+					sink.write(chars, 0, chars.length);
+					sink.flush();
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		})).join();
+		for (TokenCountingSink sink : all) {
+			sink.drain();
+		}
+		return all;
+	}
+
+	/**
+	 * Only counts tokens whose estimated count in the given sketch is at least the given minimum. Null counts all
+	 * tokens.
+	 */
+	public void setFilter(CountMinSketch sketch, long minCount) {
+		_filter = sketch;
+		_filterCount = minCount;
+	}
+
+	public CountMinSketch getFilter() {
+		return _filter;
+	}
+
+	/**
+	 * Whether tokens with the given hash pass the filter.
+	 */
+	public boolean admits(long hash) {
+		return _filter == null || _filter.estimate(hash) >= _filterCount;
+	}
+
+	public void add(String token, long count) {
+		add(token, hash(token), count);
+	}
+
+	/**
+	 * Adds to the count of a token whose hash is already known. Filtering is up to the caller.
+	 */
+	void add(String token, long hash, long count) {
+		Stripe stripe = _stripes[(int) (hash >>> 32) & (_stripes.length - 1)];
+		synchronized (stripe) {
+			long[] counter = stripe._counts.get(token);
+			if (counter == null) {
+				stripe._counts.put(token, new long[] { count });
+			} else {
+				counter[0] += count;
+			}
+		}
+	}
+
+	public long count(String token) {
+		Stripe stripe = _stripes[(int) (hash(token) >>> 32) & (_stripes.length - 1)];
+		synchronized (stripe) {
+			long[] counter = stripe._counts.get(token);
+			return counter != null ? counter[0] : 0;
+		}
+	}
+
+	/**
+	 * The number of distinct tokens counted.
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : _stripes) {
+			synchronized (stripe) {
+				size += stripe._counts.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * The total count of all tokens counted.
+	 */
+	public long getTokenCount() {
+		long total = 0;
+		for (Stripe stripe : _stripes) {
+			synchronized (stripe) {
+				for (long[] counter : stripe._counts.values()) {
+					total += counter[0];
+				}
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Builds a vocabulary of {@link #UNKNOWN} followed by the tokens that occur at least minCount times, most frequent
+	 * first (ties by token), and at most maxSize tokens in total. Tokens below the cutoffs are not part of the
+	 * vocabulary, i.e. {@link Vocabulary#lookup(String)} returns -1 for them, and are meant to be mapped to ID 0.
+	 */
+	public Vocabulary toVocabulary(long minCount, int maxSize) {
+		Vocabulary vocabulary = new Vocabulary();
+		vocabulary.id(UNKNOWN);
+		for (Entry entry : sorted(minCount, maxSize)) {
+			vocabulary.id(entry._token);
+		}
+		return vocabulary;
+	}
+
+	/**
+	 * Writes the vocabulary of {@link #toVocabulary(long, int)} with one tab-separated token and count per line, the
+	 * line number being the token's ID. The count of {@link #UNKNOWN} is the total count of the tokens below the
+	 * cutoffs, as far as they were counted. The dictionary can be read by {@link Vocabulary#read(java.io.Reader)}.
+	 */
+	public void write(Writer writer, long minCount, int maxSize) throws IOException {
+		List<Entry> entries = sorted(minCount, maxSize);
+		long known = 0;
+		for (Entry entry : entries) {
+			known += entry._count;
+		}
+		writer.write(UNKNOWN + "\t" + (getTokenCount() - known) + "\n");
+		for (Entry entry : entries) {
+			writer.write(entry._token);
+			writer.write('\t');
+			writer.write(Long.toString(entry._count));
+			writer.write('\n');
+		}
+		writer.flush();
+	}
+
+	private static class Entry {
+		private final String _token;
+		private final long _count;
+
+		Entry(String token, long count) {
+			_token = token;
+			_count = count;
+		}
+	}
+
+	private List<Entry> sorted(long minCount, int maxSize) {
+		List<Entry> entries = new ArrayList<>();
+		for (Stripe stripe : _stripes) {
+			synchronized (stripe) {
+				for (Map.Entry<String, long[]> entry : stripe._counts.entrySet()) {
+					// the unknown token keeps ID 0 even if it occurs in the data
+					if (entry.getValue()[0] >= minCount && !entry.getKey().equals(UNKNOWN)) {
+						entries.add(new Entry(entry.getKey(), entry.getValue()[0]));
+					}
+				}
+			}
+		}
+		Entry[] array = entries.toArray(new Entry[entries.size()]);
+		Arrays.parallelSort(array, (a, b) -> a._count != b._count ? Long.compare(b._count, a._count)
+				: a._token.compareTo(b._token));
+		return Arrays.asList(array).subList(0, Math.min(array.length, Math.max(0, maxSize - 1)));
+	}
+
+	/**
+	 * Hashes a token to 64 bits, for striping and for {@link CountMinSketch}.
+	 */
+	public static long hash(CharSequence token) {
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < token.length(); i++) {
+			hash = (hash ^ token.charAt(i)) * FNV_PRIME;
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * Hashes the first length characters of a token, equal to {@link #hash(CharSequence)} of the same characters.
+	 */
+	public static long hash(char[] token, int length) {
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < length; i++) {
+			hash = (hash ^ token[i]) * FNV_PRIME;
+		}
+		return mix(hash);
+	}
+
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+}
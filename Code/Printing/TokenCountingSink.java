@@ -0,0 +1,108 @@
+package data.loader.sst;
+
+import java.util.Arrays;
+
+/**
+ * {@link TokenSink} that counts the printed tokens, either exactly into a shared {@link TokenCounter} or approximately
+ * into its own {@link CountMinSketch}. Exact counts are collected in a small local table first and only added to the
+ * counter when the table fills up or on {@link #drain()}, so that each distinct token takes the counter's lock and
+ * creates a String once per batch rather than once per occurrence.
+ * <p>
+ * A sink is meant to be used by a single thread.
+ */
+public class TokenCountingSink extends TokenizingSink {
+
+	private static final int TABLE_SIZE = 1 << 13;
+	private static final int MAX_USED = TABLE_SIZE / 2;
+
+	private final TokenCounter _counter;
+	private final CountMinSketch _sketch;
+
+	private final char[][] _keys = new char[TABLE_SIZE][];
+	private final long[] _hashes = new long[TABLE_SIZE];
+	private final long[] _counts = new long[TABLE_SIZE];
+	private int _used;
+
+	/**
+	 * Creates a sink that counts into the given counter, skipping the tokens that do not pass its filter.
+	 */
+	public TokenCountingSink(TokenCounter counter) {
+		_counter = counter;
+		_sketch = null;
+	}
+
+	/**
+	 * Creates a sink that counts into the given sketch.
+	 */
+	public TokenCountingSink(CountMinSketch sketch) {
+		_counter = null;
+		_sketch = sketch;
+	}
+
+	public TokenCounter getCounter() {
+		return _counter;
+	}
+
+	public CountMinSketch getSketch() {
+		return _sketch;
+	}
+
+	@Override
+	protected void token(char[] chars, int length) {
+		long hash = TokenCounter.hash(chars, length);
+		if (_sketch != null) {
+			_sketch.add(hash);
+			return;
+		}
+		if (!_counter.admits(hash)) {
+			return;
+		}
+		int slot = (int) hash & (TABLE_SIZE - 1);
+		while (true) {
+			char[] key = _keys[slot];
+			if (key == null) {
+				_keys[slot] = Arrays.copyOf(chars, length);
+				_hashes[slot] = hash;
+				_counts[slot] = 1;
+				if (++_used > MAX_USED) {
+					drain();
+				}
+				return;
+			}
+			if (_hashes[slot] == hash && equals(key, chars, length)) {
+				_counts[slot]++;
+				return;
+			}
+			slot = (slot + 1) & (TABLE_SIZE - 1);
+		}
+	}
+
+	/**
+	 * Adds the locally collected counts to the counter. Must be called after the last token, before the counts are
+	 * read; the sink must have been flushed before.
+	 */
+	public void drain() {
+		if (_used == 0) {
+			return;
+		}
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			if (_keys[i] != null) {
+				_counter.add(new String(_keys[i]), _hashes[i], _counts[i]);
+				_keys[i] = null;
+			}
+		}
+		_used = 0;
+	}
+
+	private static boolean equals(char[] key, char[] chars, int length) {
+		if (key.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (key[i] != chars[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,68 @@
+package data.loader.sst;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads the varint-encoded token ID files written by {@link TokenIdSink}, one file's IDs at a time.
+ */
+public class TokenIdReader implements Closeable {
+
+	private final InputStream _in;
+	private int[] _ids = new int[1024];
+
+	/**
+	 * @param in
+	 *            the encoded IDs; should be buffered
+	 */
+	public TokenIdReader(InputStream in) {
+		_in = in;
+	}
+
+	/**
+	 * Returns the token IDs of the next file, or null if the end of the input has been reached.
+	 */
+	public int[] nextFile() throws IOException {
+		int count = 0;
+		while (true) {
+			int value = readVarint(count == 0);
+			if (value == -1) {
+				return null;
+			}
+			if (value == 0) {
+				return Arrays.copyOf(_ids, count);
+			}
+			if (count == _ids.length) {
+				_ids = Arrays.copyOf(_ids, count * 2);
+			}
+			_ids[count++] = value - 1;
+		}
+	}
+
+	private int readVarint(boolean eofAllowed) throws IOException {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			int b = _in.read();
+			if (b == -1) {
+				if (eofAllowed && shift == 0) {
+					return -1;
+				}
+				throw new EOFException("truncated token ID file");
+			}
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		_in.close();
+	}
+}
@@ -0,0 +1,163 @@
+package data.loader.sst;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * {@link TokenSink} that maps every printed token to its ID in a shared {@link Vocabulary}. The IDs are either
+ * collected into an int array per file or streamed to a varint-encoded binary file (see {@link TokenIdReader}).
+ * Optionally, the printed text is passed on to a second sink, so text and IDs can be produced in the same run.
+ * <p>
+ * A sink is meant to be used by a single thread; the vocabulary may be shared between sinks. Recently seen tokens are
+ * kept in a small local table so that known tokens are resolved without creating a String.
+ */
+public class TokenIdSink extends TokenizingSink {
+
+	private static final int CACHE_SIZE = 4096;
+
+	private final Vocabulary _vocabulary;
+	private final OutputStream _out;
+	private final byte[] _varint = new byte[5];
+	private TokenSink _textSink;
+
+	private final char[][] _cacheKeys = new char[CACHE_SIZE][];
+	private final int[] _cacheIds = new int[CACHE_SIZE];
+
+	private int[] _ids;
+	private int _count;
+
+	/**
+	 * Creates a sink that collects the IDs of the current file, see {@link #getTokenIds()}.
+	 */
+	public TokenIdSink(Vocabulary vocabulary) {
+		_vocabulary = vocabulary;
+		_out = null;
+		_ids = new int[1024];
+	}
+
+	/**
+	 * Creates a sink that writes each ID as an unsigned varint of (ID + 1) to the given stream, and a single 0 byte
+	 * at the end of every file. The stream should be buffered.
+	 */
+	public TokenIdSink(Vocabulary vocabulary, OutputStream out) {
+		_vocabulary = vocabulary;
+		_out = out;
+		_ids = null;
+	}
+
+	public Vocabulary getVocabulary() {
+		return _vocabulary;
+	}
+
+	public TokenSink getTextSink() {
+		return _textSink;
+	}
+
+	/**
+	 * Sets a sink that additionally receives the printed text unchanged.
+	 */
+	public void setTextSink(TokenSink textSink) {
+		_textSink = textSink;
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		if (_textSink != null) {
+			_textSink.write(chars, offset, length);
+		}
+		super.write(chars, offset, length);
+	}
+
+	@Override
+	public void write(CharSequence chars, int offset, int length) throws IOException {
+		if (_textSink != null) {
+			char[] copy = new char[length];
+			for (int i = 0; i < length; i++) {
+				copy[i] = chars.charAt(offset + i);
+			}
+			write(copy, 0, length);
+			return;
+		}
+		super.write(chars, offset, length);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		super.flush();
+		if (_textSink != null) {
+			_textSink.flush();
+		}
+		if (_out != null) {
+			_out.flush();
+		}
+	}
+
+	@Override
+	protected void token(char[] chars, int length) throws IOException {
+		int id = lookup(chars, length);
+		if (_out != null) {
+			writeVarint(id + 1);
+		} else {
+			if (_count == _ids.length) {
+				_ids = Arrays.copyOf(_ids, _count * 2);
+			}
+			_ids[_count++] = id;
+		}
+	}
+
+	/**
+	 * Returns the IDs of the tokens printed since the last call to {@link #endFile()}. Only available for sinks that
+	 * collect their IDs; the context must have been flushed before.
+	 */
+	public int[] getTokenIds() {
+		if (_ids == null) {
+			throw new IllegalStateException("token IDs are streamed, not collected");
+		}
+		return Arrays.copyOf(_ids, _count);
+	}
+
+	/**
+	 * Marks the end of the current file: writes the file terminator to the binary output, or discards the collected
+	 * IDs. The context must have been flushed before.
+	 */
+	public void endFile() throws IOException {
+		super.flush();
+		if (_out != null) {
+			_out.write(0);
+		}
+		_count = 0;
+	}
+
+	private int lookup(char[] chars, int length) {
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+		char[] key = _cacheKeys[slot];
+		if (key != null && key.length == length) {
+			int i = 0;
+			while (i < length && key[i] == chars[i]) {
+				i++;
+			}
+			if (i == length) {
+				return _cacheIds[slot];
+			}
+		}
+		int id = _vocabulary.id(new String(chars, 0, length));
+		_cacheKeys[slot] = Arrays.copyOf(chars, length);
+		_cacheIds[slot] = id;
+		return id;
+	}
+
+	private void writeVarint(int value) throws IOException {
+		int n = 0;
+		while ((value & ~0x7F) != 0) {
+			_varint[n++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		_varint[n++] = (byte) value;
+		_out.write(_varint, 0, n);
+	}
+}
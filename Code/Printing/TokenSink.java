@@ -0,0 +1,28 @@
+package data.loader.sst;
+
+import java.io.IOException;
+
+/**
+ * Destination for the characters printed by an {@link SSTPrintingContextExtended}. The context buffers a bounded
+ * number of characters and hands them to its sink in chunks, so the printed output of a file never has to be held in
+ * memory as a whole.
+ */
+public interface TokenSink {
+
+	/**
+	 * Writes a chunk of printed characters. The array is reused by the caller after this method returns.
+	 */
+	void write(char[] chars, int offset, int length) throws IOException;
+
+	/**
+	 * Pushes all characters written so far to the underlying destination.
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Called when the context records the position of the cursor, with its offset in the printed characters, before
+	 * the character at that offset is written to the sink. Does nothing by default.
+	 */
+	default void cursor(long charOffset) {
+	}
+}
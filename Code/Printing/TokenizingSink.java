@@ -0,0 +1,61 @@
+package data.loader.sst;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * {@link TokenSink} that splits the printed characters back into tokens. Tokens are the maximal runs of characters
+ * between the tab and line break separators emitted by {@link SSTPrintingContextExtended}; empty tokens are dropped.
+ * A token may span several chunks; it is completed by the next separator or by {@link #flush()}.
+ */
+public abstract class TokenizingSink implements TokenSink {
+
+	private char[] _token = new char[64];
+	private int _length;
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			append(chars[i]);
+		}
+	}
+
+	/**
+	 * Writes a chunk of printed characters straight from a character sequence, without copying it to an array first.
+	 */
+	public void write(CharSequence chars, int offset, int length) throws IOException {
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			append(chars.charAt(i));
+		}
+	}
+
+	private void append(char c) throws IOException {
+		if (c == '\t' || c == '\n') {
+			endToken();
+		} else {
+			if (_length == _token.length) {
+				_token = Arrays.copyOf(_token, _length * 2);
+			}
+			_token[_length++] = c;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		endToken();
+	}
+
+	private void endToken() throws IOException {
+		if (_length > 0) {
+			token(_token, _length);
+			_length = 0;
+		}
+	}
+
+	/**
+	 * Called once per completed token. The array is reused after this method returns.
+	 */
+	protected abstract void token(char[] chars, int length) throws IOException;
+}
@@ -0,0 +1,140 @@
+package data.loader.sst;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cc.kave.commons.model.naming.types.ITypeName;
+import cc.kave.commons.model.typeshapes.ITypeHierarchy;
+import cc.kave.commons.model.typeshapes.ITypeShape;
+
+/**
+ * Bounded LRU cache of the printed headers of types, i.e. the type kind, name and supertype list up to the opening
+ * brace, see {@link SSTPrintingVisitorExtended#setTypeHeaderCache(TypeHeaderCache)}. Entries are keyed by the
+ * enclosing type name, a fingerprint of the type shape that holds the supertypes that are printed, in order, and the
+ * indentation level; partial classes and the repeated completion events of a type thus share an entry.
+ * <p>
+ * The cache is thread-safe, but the printed output depends on the configuration of the visitor and the context, so a
+ * cache must only be shared between visitors that are configured the same way.
+ */
+public class TypeHeaderCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 16 * 1024;
+
+	private final LinkedHashMap<Key, String> _entries;
+	private long _hits;
+	private long _misses;
+
+	public TypeHeaderCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries
+	 *            number of headers above which the least recently used ones are evicted
+	 */
+	public TypeHeaderCache(int maxEntries) {
+		_entries = new LinkedHashMap<Key, String>(256, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the header printed for the same type with a type shape of the same supertypes (or without a type shape)
+	 * at the same indentation level, or null.
+	 */
+	public String get(ITypeName enclosingType, ITypeShape typeShape, int indentationLevel) {
+		Key key = new Key(enclosingType, fingerprint(typeShape), indentationLevel);
+		synchronized (this) {
+			String header = _entries.get(key);
+			if (header != null) {
+				_hits++;
+			} else {
+				_misses++;
+			}
+			return header;
+		}
+	}
+
+	public void put(ITypeName enclosingType, ITypeShape typeShape, int indentationLevel, String header) {
+		Key key = new Key(enclosingType, fingerprint(typeShape), indentationLevel);
+		synchronized (this) {
+			_entries.put(key, header);
+		}
+	}
+
+	public synchronized void clear() {
+		_entries.clear();
+	}
+
+	public synchronized int size() {
+		return _entries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return _hits;
+	}
+
+	public synchronized long getMissCount() {
+		return _misses;
+	}
+
+	/**
+	 * The parts of the type hierarchy that the header depends on: whether it has supertypes, the printed superclass
+	 * (or null) and whether a comma follows it, and the printed interfaces in order. Null without supertypes.
+	 */
+	private static List<Object> fingerprint(ITypeShape typeShape) {
+		if (typeShape == null || !typeShape.getTypeHierarchy().hasSupertypes()) {
+			return null;
+		}
+		ITypeHierarchy hierarchy = typeShape.getTypeHierarchy();
+		List<Object> fingerprint = new ArrayList<>(hierarchy.getImplements().size() + 2);
+		ITypeHierarchy superclass = hierarchy.getExtends();
+		if (hierarchy.hasSuperclass() && superclass != null) {
+			fingerprint.add(superclass.getElement());
+			fingerprint.add(hierarchy.isImplementingInterfaces());
+		} else {
+			fingerprint.add(null);
+			fingerprint.add(false);
+		}
+		for (ITypeHierarchy i : hierarchy.getImplements()) {
+			fingerprint.add(i.getElement());
+		}
+		return fingerprint;
+	}
+
+	private static class Key {
+		private final ITypeName _type;
+		private final List<Object> _fingerprint;
+		private final int _indentationLevel;
+		private final int _hash;
+
+		Key(ITypeName type, List<Object> fingerprint, int indentationLevel) {
+			_type = type;
+			_fingerprint = fingerprint;
+			_indentationLevel = indentationLevel;
+			_hash = 31 * (31 * type.hashCode() + (fingerprint != null ? fingerprint.hashCode() : 0)) + indentationLevel;
+		}
+
+		@Override
+		public int hashCode() {
+			return _hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return _hash == other._hash && _indentationLevel == other._indentationLevel && _type.equals(other._type)
+					&& (_fingerprint != null ? _fingerprint.equals(other._fingerprint) : other._fingerprint == null);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package data.loader.sst;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import cc.kave.commons.model.naming.types.ITypeName;
+
+/**
+ * Bounded cache of rendered type names, see {@link SSTPrintingContextExtended#setTypeNameCache(TypeNameCache)}. An
+ * entry holds the output of {@link SSTPrintingContextExtended#type(ITypeName)} for a type name, including its leading
+ * separator and its (recursively rendered) type parameters, so that a cached type is appended in one piece.
+ * <p>
+ * The cache is thread-safe: entries are striped by the hash of the type name, each stripe an LRU map with its own lock
+ * and its share of the entry budget, so threads printing different types rarely contend.
+ */
+public class TypeNameCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 64 * 1024;
+
+	private static final int STRIPES = 16;
+
+	private final Stripe[] _stripes = new Stripe[STRIPES];
+	private final LongAdder _hits = new LongAdder();
+	private final LongAdder _misses = new LongAdder();
+
+	private static class Stripe extends LinkedHashMap<ITypeName, String> {
+		private static final long serialVersionUID = 1L;
+
+		private final int _maxEntries;
+
+		Stripe(int maxEntries) {
+			super(64, 0.75f, true);
+			_maxEntries = maxEntries;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ITypeName, String> eldest) {
+			return size() > _maxEntries;
+		}
+	}
+
+	public TypeNameCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries
+	 *            number of type names above which the least recently used ones are evicted
+	 */
+	public TypeNameCache(int maxEntries) {
+		for (int i = 0; i < STRIPES; i++) {
+			_stripes[i] = new Stripe(Math.max(1, maxEntries / STRIPES));
+		}
+	}
+
+	/**
+	 * Returns the output rendered for an equal type name, or null.
+	 */
+	public String get(ITypeName typeName) {
+		Stripe stripe = stripe(typeName);
+		String rendered;
+		synchronized (stripe) {
+			rendered = stripe.get(typeName);
+		}
+		if (rendered != null) {
+			_hits.increment();
+		} else {
+			_misses.increment();
+		}
+		return rendered;
+	}
+
+	public void put(ITypeName typeName, String rendered) {
+		Stripe stripe = stripe(typeName);
+		synchronized (stripe) {
+			stripe.put(typeName, rendered);
+		}
+	}
+
+	public void clear() {
+		for (Stripe stripe : _stripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : _stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	public long getHitCount() {
+		return _hits.sum();
+	}
+
+	public long getMissCount() {
+		return _misses.sum();
+	}
+
+	private Stripe stripe(ITypeName typeName) {
+		int hash = typeName.hashCode();
+		return _stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+	}
+}
@@ -0,0 +1,207 @@
+package data.loader.sst;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cc.kave.commons.model.naming.codeelements.IMethodName;
+import cc.kave.commons.model.naming.codeelements.IParameterName;
+import cc.kave.commons.model.naming.types.ITypeName;
+import cc.kave.commons.model.ssts.IReference;
+import cc.kave.commons.model.ssts.ISST;
+import cc.kave.commons.model.ssts.declarations.IMethodDeclaration;
+import cc.kave.commons.model.ssts.expressions.IAssignableExpression;
+import cc.kave.commons.model.ssts.expressions.assignable.ICastExpression;
+import cc.kave.commons.model.ssts.expressions.assignable.ICompletionExpression;
+import cc.kave.commons.model.ssts.expressions.assignable.IInvocationExpression;
+import cc.kave.commons.model.ssts.expressions.simple.IReferenceExpression;
+import cc.kave.commons.model.ssts.impl.visitor.AbstractTraversingNodeVisitor;
+import cc.kave.commons.model.ssts.references.IFieldReference;
+import cc.kave.commons.model.ssts.references.IPropertyReference;
+import cc.kave.commons.model.ssts.references.IVariableReference;
+import cc.kave.commons.model.ssts.statements.IAssignment;
+import cc.kave.commons.model.ssts.statements.IVariableDeclaration;
+
+/**
+ * Extracts the object usages of an SST for best-matching-neighbor (BMN) completion: for every local variable and
+ * parameter of a method that methods are called on, its type, the enclosing method ("in:&lt;method&gt;"), how it was
+ * defined ("def:param", "def:new", "def:return:&lt;method&gt;", "def:field:&lt;field&gt;",
+ * "def:property:&lt;property&gt;" or "def:cast") and the methods called on it. Calls on this and base are not usages
+ * of another object and are skipped.
+ * <p>
+ * The extractor keeps no state between SSTs and can be shared between threads.
+ */
+public class UsageFeatureExtractor extends AbstractTraversingNodeVisitor<UsageFeatureExtractor.MethodUsages, Void> {
+
+	/**
+	 * Returns the usages of all methods of the SST that have at least one call.
+	 */
+	public List<ObjectUsage> extract(ISST sst) {
+		List<ObjectUsage> usages = new ArrayList<>();
+		for (IMethodDeclaration method : sst.getMethods()) {
+			MethodUsages state = new MethodUsages(method.getName());
+			method.accept(this, state);
+			state.collect(usages);
+		}
+		return usages;
+	}
+
+	/**
+	 * Returns the usage of the object that is completed on in the SST, with the calls made on it elsewhere in the
+	 * method, or null if the SST has no completion on an object of a known type. Methods not yet loaded by
+	 * {@link LazySSTReader} cannot contain the completion and are skipped.
+	 */
+	public ObjectUsage extractQuery(ISST sst) {
+		for (IMethodDeclaration method : sst.getMethods()) {
+			if (!LazySSTReader.isLoaded(method)) {
+				continue;
+			}
+			MethodUsages state = new MethodUsages(method.getName());
+			method.accept(this, state);
+			if (state._completion != null) {
+				return state.query();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(IVariableDeclaration stmt, MethodUsages context) {
+		context.declare(stmt.getReference().getIdentifier(), stmt.getType());
+		return super.visit(stmt, context);
+	}
+
+	@Override
+	public Void visit(IAssignment stmt, MethodUsages context) {
+		if (stmt.getReference() instanceof IVariableReference) {
+			String definition = definition(stmt.getExpression());
+			if (definition != null) {
+				context.define(((IVariableReference) stmt.getReference()).getIdentifier(), definition);
+			}
+		}
+		return super.visit(stmt, context);
+	}
+
+	@Override
+	public Void visit(IInvocationExpression entity, MethodUsages context) {
+		IVariableReference reference = entity.getReference();
+		if (reference != null && !reference.isMissing()) {
+			context.call(reference.getIdentifier(), entity.getMethodName());
+		}
+		return super.visit(entity, context);
+	}
+
+	@Override
+	public Void visit(ICompletionExpression entity, MethodUsages context) {
+		IVariableReference reference = entity.getVariableReference();
+		if (reference != null && !reference.isMissing()) {
+			context._completion = context.usage(reference.getIdentifier());
+		} else if (entity.getTypeReference() != null) {
+			// a static member access on the type
+			context._completion = new Usage();
+			context._completion._type = entity.getTypeReference();
+			context._completion._definition = "def:static";
+		}
+		return super.visit(entity, context);
+	}
+
+	private static String definition(IAssignableExpression expression) {
+		if (expression instanceof IInvocationExpression) {
+			IMethodName method = ((IInvocationExpression) expression).getMethodName();
+			return method.isConstructor() ? "def:new" : "def:return:" + method.getIdentifier();
+		}
+		if (expression instanceof ICastExpression) {
+			return "def:cast";
+		}
+		if (expression instanceof IReferenceExpression) {
+			IReference reference = ((IReferenceExpression) expression).getReference();
+			if (reference instanceof IFieldReference) {
+				return "def:field:" + ((IFieldReference) reference).getFieldName().getIdentifier();
+			}
+			if (reference instanceof IPropertyReference) {
+				return "def:property:" + ((IPropertyReference) reference).getPropertyName().getIdentifier();
+			}
+		}
+		return null;
+	}
+
+	private static boolean isKnown(ITypeName type) {
+		return type != null && !type.isUnknown();
+	}
+
+	private static class Usage {
+		private ITypeName _type;
+		private String _definition;
+		private final List<IMethodName> _calls = new ArrayList<>();
+	}
+
+	/**
+	 * The usages of the variables of one method, collected while visiting it.
+	 */
+	static final class MethodUsages {
+		private final IMethodName _method;
+		private final Map<String, Usage> _variables = new LinkedHashMap<>();
+		private Usage _completion;
+
+		MethodUsages(IMethodName method) {
+			_method = method;
+			for (IParameterName parameter : method.getParameters()) {
+				declare(parameter.getName(), parameter.getValueType());
+				define(parameter.getName(), "def:param");
+			}
+		}
+
+		private Usage usage(String identifier) {
+			return _variables.computeIfAbsent(identifier, id -> new Usage());
+		}
+
+		void declare(String identifier, ITypeName type) {
+			Usage usage = usage(identifier);
+			if (!isKnown(usage._type) && isKnown(type)) {
+				usage._type = type;
+			}
+		}
+
+		void define(String identifier, String definition) {
+			Usage usage = usage(identifier);
+			// the first definition counts
+			if (usage._definition == null) {
+				usage._definition = definition;
+			}
+		}
+
+		void call(String identifier, IMethodName method) {
+			if ("this".equals(identifier) || "base".equals(identifier)) {
+				return;
+			}
+			Usage usage = usage(identifier);
+			usage._calls.add(method);
+			// the declaring type of the first call stands in for variables of unknown type
+			if (!isKnown(usage._type)) {
+				usage._type = method.getDeclaringType();
+			}
+		}
+
+		void collect(List<ObjectUsage> usages) {
+			for (Usage usage : _variables.values()) {
+				if (isKnown(usage._type) && !usage._calls.isEmpty()) {
+					usages.add(toObjectUsage(usage));
+				}
+			}
+		}
+
+		ObjectUsage query() {
+			return isKnown(_completion._type) ? toObjectUsage(_completion) : null;
+		}
+
+		private ObjectUsage toObjectUsage(Usage usage) {
+			List<String> features = new ArrayList<>(2);
+			features.add("in:" + _method.getName());
+			if (usage._definition != null) {
+				features.add(usage._definition);
+			}
+			return new ObjectUsage(usage._type, features, new ArrayList<>(usage._calls));
+		}
+	}
+}
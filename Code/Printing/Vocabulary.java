@@ -0,0 +1,80 @@
+package data.loader.sst;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe mapping between printed tokens and dense int IDs. IDs are handed out in order of first occurrence,
+ * starting at 0. Lookups of known tokens do not lock; only the assignment of new IDs is serialized.
+ */
+public class Vocabulary {
+
+	private final ConcurrentHashMap<String, Integer> _ids = new ConcurrentHashMap<>();
+	private final List<String> _tokens = new ArrayList<>();
+
+	/**
+	 * Returns the ID of the given token, assigning the next free ID if the token has not been seen before.
+	 */
+	public int id(String token) {
+		Integer id = _ids.get(token);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = _ids.get(token);
+			if (id == null) {
+				id = _tokens.size();
+				_tokens.add(token);
+				_ids.put(token, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Returns the ID of the given token, or -1 if the token is not part of the vocabulary.
+	 */
+	public int lookup(String token) {
+		Integer id = _ids.get(token);
+		return id != null ? id : -1;
+	}
+
+	public synchronized String token(int id) {
+		return _tokens.get(id);
+	}
+
+	public synchronized int size() {
+		return _tokens.size();
+	}
+
+	/**
+	 * Writes the dictionary with one token per line, the line number being the token's ID.
+	 */
+	public synchronized void write(Writer writer) throws IOException {
+		for (String token : _tokens) {
+			writer.write(token);
+			writer.write('\n');
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Reads a dictionary in the format produced by {@link #write(Writer)}. Anything after a tab on a line, such as the
+	 * counts written by {@link TokenCounter}, is ignored.
+	 */
+	public static Vocabulary read(Reader reader) throws IOException {
+		Vocabulary vocabulary = new Vocabulary();
+		BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		String line;
+		while ((line = lines.readLine()) != null) {
+			int tab = line.indexOf('\t');
+			vocabulary.id(tab >= 0 ? line.substring(0, tab) : line);
+		}
+		return vocabulary;
+	}
+}
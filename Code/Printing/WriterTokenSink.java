@@ -0,0 +1,26 @@
+package data.loader.sst;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * {@link TokenSink} that forwards the printed characters to a {@link Writer}.
+ */
+public class WriterTokenSink implements TokenSink {
+
+	private final Writer _writer;
+
+	public WriterTokenSink(Writer writer) {
+		_writer = writer;
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		_writer.write(chars, offset, length);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		_writer.flush();
+	}
+}